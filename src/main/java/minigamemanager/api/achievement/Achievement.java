@@ -36,6 +36,11 @@ public class Achievement {
 	 * Item that represents the achievement (e.g. in a menu)
 	 */
 	private ItemStack item;
+	/**
+	 * The position of the achievement in the {@link AchievementRegistry}, or -1
+	 * if it is not registered
+	 */
+	private volatile int ordinal = -1;
 	
 	/**
 	 * Create a new achievement. Its ID is generated from its parent minigame,
@@ -121,6 +126,36 @@ public class Achievement {
 		return description;
 	}
 	
+	/**
+	 * Get the ID of the achievement, which identifies it in the save files.
+	 * This is the ID it was created with, or one generated from its parent
+	 * minigame, name, and description.
+	 * 
+	 * @return The ID of the achievement
+	 */
+	public int getId() {
+		return hashCode();
+	}
+	
+	/**
+	 * Get the ordinal given to this achievement when it was registered. Unlike
+	 * the hash code, the ordinal may change between server restarts.
+	 * 
+	 * @return The ordinal of the achievement, or -1 if it is not registered
+	 */
+	public int getOrdinal() {
+		return ordinal;
+	}
+	
+	/**
+	 * Set the ordinal of this achievement
+	 * 
+	 * @param ordinal The new ordinal
+	 */
+	void setOrdinal(int ordinal) {
+		this.ordinal = ordinal;
+	}
+	
 	/**
 	 * Get the item that is used to represent this achievement (in a menu for
 	 * example)
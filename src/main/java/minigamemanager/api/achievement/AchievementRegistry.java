@@ -0,0 +1,192 @@
+package minigamemanager.api.achievement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.Validate;
+
+import minigamemanager.api.minigame.Minigame;
+
+/**
+ * Keeps track of the registered achievements. Each achievement is given an
+ * ordinal when it is registered: the first one is 0, the next is 1, and so on,
+ * so the ordinals can be used as indexes into arrays and bitsets.<br>
+ * Achievements are also indexed by their ID, which is what identifies them in
+ * the save files, and by their parent minigame and name. Registering an
+ * achievement whose ID or name is already taken by a different achievement
+ * fails, so two achievements can never be mistaken for each other.<br>
+ * <b>Note:</b> Ordinals depend on the order achievements are registered in, so
+ * they must never be saved. Save the achievement's ID instead.
+ * 
+ * @author DonkeyCore
+ */
+public final class AchievementRegistry {
+	
+	/**
+	 * The registered achievements, indexed by ordinal. The array is never
+	 * modified, it is replaced whenever an achievement is registered.
+	 */
+	private volatile Achievement[] achievements = new Achievement[0];
+	/**
+	 * A read-only view of {@link #achievements}
+	 */
+	private volatile List<Achievement> view = Collections.emptyList();
+	/**
+	 * The registered achievements, by ID
+	 */
+	private final Map<Integer, Achievement> byId = new ConcurrentHashMap<>();
+	/**
+	 * The registered achievements, by name, for each minigame
+	 */
+	private final Map<Class<? extends Minigame>, Map<String, Achievement>> byName = new ConcurrentHashMap<>();
+	/**
+	 * Read-only lists of the registered achievements for each minigame
+	 */
+	private final Map<Class<? extends Minigame>, List<Achievement>> byMinigame = new ConcurrentHashMap<>();
+	
+	/**
+	 * Register an achievement and give it the next ordinal
+	 * 
+	 * @param achievement The achievement to register
+	 * 
+	 * @return Whether the achievement was registered, or false if it (or an
+	 *         equal achievement) already was
+	 * 
+	 * @throws IllegalArgumentException If a different achievement already has
+	 *             the same ID, or the same name in the same minigame
+	 */
+	public synchronized boolean register(Achievement achievement) {
+		Validate.notNull(achievement, "Achievement cannot be null");
+		Validate.notNull(achievement.getParent(), "The parent of the achievement cannot be null");
+		Achievement old = byId.get(achievement.getId());
+		if (old != null) {
+			if (old.equals(achievement))
+				return false;
+			throw new IllegalArgumentException(String.format("The achievement \"%s\" has the same ID (%d) as \"%s\"", achievement.getName(), achievement.getId(), old.getName()));
+		}
+		Map<String, Achievement> names = byName.get(achievement.getParent());
+		if (names == null)
+			byName.put(achievement.getParent(), names = new ConcurrentHashMap<>());
+		old = names.get(achievement.getName());
+		if (old != null)
+			throw new IllegalArgumentException(String.format("The achievement \"%s\" is already registered for %s", achievement.getName(), achievement.getParent().getName()));
+		int ordinal = achievements.length;
+		Achievement[] a = Arrays.copyOf(achievements, ordinal + 1);
+		a[ordinal] = achievement;
+		achievement.setOrdinal(ordinal);
+		byId.put(achievement.getId(), achievement);
+		names.put(achievement.getName(), achievement);
+		List<Achievement> minigame = byMinigame.get(achievement.getParent());
+		Achievement[] m = minigame == null ? new Achievement[1] : minigame.toArray(new Achievement[minigame.size() + 1]);
+		m[m.length - 1] = achievement;
+		byMinigame.put(achievement.getParent(), Collections.unmodifiableList(Arrays.asList(m)));
+		achievements = a;
+		view = Collections.unmodifiableList(Arrays.asList(a));
+		return true;
+	}
+	
+	/**
+	 * Determine whether an achievement is registered
+	 * 
+	 * @param achievement The achievement to test
+	 * 
+	 * @return Whether the achievement is registered
+	 */
+	public boolean isRegistered(Achievement achievement) {
+		return resolve(achievement) != null;
+	}
+	
+	/**
+	 * Get the registered instance of an achievement. This is the achievement
+	 * itself if it was registered, or the registered achievement that is
+	 * equal to it.
+	 * 
+	 * @param achievement The achievement to find
+	 * 
+	 * @return The registered achievement, or null if it is not registered
+	 */
+	public Achievement resolve(Achievement achievement) {
+		int ordinal = achievement.getOrdinal();
+		Achievement[] a = achievements;
+		if (ordinal >= 0 && ordinal < a.length && a[ordinal] == achievement)
+			return achievement;
+		Achievement registered = byId.get(achievement.getId());
+		return achievement.equals(registered) ? registered : null;
+	}
+	
+	/**
+	 * Get an achievement by its ordinal
+	 * 
+	 * @param ordinal The ordinal of the achievement
+	 * 
+	 * @return The achievement, or null if no achievement has that ordinal
+	 */
+	public Achievement get(int ordinal) {
+		Achievement[] a = achievements;
+		return ordinal >= 0 && ordinal < a.length ? a[ordinal] : null;
+	}
+	
+	/**
+	 * Get an achievement by its ID, which is what identifies it in the save
+	 * files
+	 * 
+	 * @param id The ID of the achievement
+	 * 
+	 * @return The achievement, or null if no registered achievement has that
+	 *         ID
+	 * 
+	 * @see Achievement#getId()
+	 */
+	public Achievement getById(int id) {
+		return byId.get(id);
+	}
+	
+	/**
+	 * Get an achievement by its parent minigame and name
+	 * 
+	 * @param parent The class of the minigame that owns the achievement
+	 * @param name The display name of the achievement
+	 * 
+	 * @return The achievement, or null if the minigame has no registered
+	 *         achievement with that name
+	 */
+	public Achievement get(Class<? extends Minigame> parent, String name) {
+		Map<String, Achievement> names = byName.get(parent);
+		return names == null ? null : names.get(name);
+	}
+	
+	/**
+	 * Get the achievements registered for a minigame
+	 * 
+	 * @param parent The class of the minigame
+	 * 
+	 * @return A read-only list of achievements, ordered by ordinal
+	 */
+	public List<Achievement> getAchievements(Class<? extends Minigame> parent) {
+		List<Achievement> a = byMinigame.get(parent);
+		return a == null ? Collections.<Achievement> emptyList() : a;
+	}
+	
+	/**
+	 * Get the amount of registered achievements, which is also the next
+	 * ordinal to be given out
+	 * 
+	 * @return The amount of registered achievements
+	 */
+	public int size() {
+		return achievements.length;
+	}
+	
+	/**
+	 * Get the registered achievements
+	 * 
+	 * @return A read-only list of achievements, ordered by ordinal
+	 */
+	public List<Achievement> getAchievements() {
+		return view;
+	}
+	
+}
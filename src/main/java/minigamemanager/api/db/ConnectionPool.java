@@ -0,0 +1,219 @@
+package minigamemanager.api.db;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A fixed-size pool of database connections. Connections are opened when
+ * first needed, validated when they are borrowed, and kept open until the
+ * pool is closed.
+ * 
+ * @author DonkeyCore
+ */
+public class ConnectionPool implements Closeable {
+	
+	/**
+	 * Opens new connections for the pool
+	 */
+	private final ConnectionFactory factory;
+	/**
+	 * The most connections that can be open at once
+	 */
+	private final int size;
+	/**
+	 * Seconds to wait when validating a connection, or 0 to skip validation
+	 */
+	private final int validationTimeout;
+	/**
+	 * Milliseconds to wait for a connection when all of them are in use
+	 */
+	private final long waitTimeout;
+	/**
+	 * Connections that are not currently borrowed
+	 */
+	private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+	/**
+	 * How many connections are open, whether borrowed or idle
+	 */
+	private int open = 0;
+	/**
+	 * Whether the pool has been closed
+	 */
+	private volatile boolean closed = false;
+	
+	/**
+	 * Create a new connection pool
+	 * 
+	 * @param factory Opens new connections for the pool
+	 * @param size The most connections that can be open at once
+	 * @param validationTimeout Seconds to wait when validating a borrowed
+	 *            connection, or 0 to skip validation
+	 * @param waitTimeout Milliseconds to wait for a connection when all of
+	 *            them are in use
+	 */
+	public ConnectionPool(ConnectionFactory factory, int size, int validationTimeout, long waitTimeout) {
+		Validate.notNull(factory, "Connection factory cannot be null");
+		Validate.isTrue(size > 0, "Pool size must be above 0");
+		Validate.isTrue(validationTimeout >= 0, "Validation timeout cannot be negative");
+		this.factory = factory;
+		this.size = size;
+		this.validationTimeout = validationTimeout;
+		this.waitTimeout = waitTimeout;
+	}
+	
+	/**
+	 * Borrow a connection from the pool. It must be closed to return it to
+	 * the pool, preferably with a try-with-resources statement.
+	 * 
+	 * @return A connection that is not in use by anything else
+	 * @throws SQLException If a connection could not be opened, or none
+	 *             became available in time
+	 */
+	public PooledConnection getConnection() throws SQLException {
+		if (closed)
+			throw new SQLException("Connection pool is closed");
+		PooledConnection c;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeout);
+		while ((c = idle.poll()) == null && (c = open()) == null) {
+			// every connection is in use, wait for one to be returned or discarded
+			synchronized (this) {
+				long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remaining <= 0)
+					throw new SQLException("Timed out waiting for a connection");
+				if (idle.isEmpty() && open >= size) {
+					try {
+						wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted while waiting for a connection", e);
+					}
+				}
+			}
+			if (closed)
+				throw new SQLException("Connection pool is closed");
+		}
+		if (validationTimeout > 0 && !c.getConnection().isValid(validationTimeout)) {
+			discard(c);
+			c = open();
+			if (c == null)
+				throw new SQLException("Could not replace an invalid connection");
+		}
+		return c;
+	}
+	
+	/**
+	 * Open a new connection if the pool is not full
+	 * 
+	 * @return The new connection, or null if the pool is full
+	 * @throws SQLException If the connection could not be opened
+	 */
+	private PooledConnection open() throws SQLException {
+		synchronized (this) {
+			if (open >= size)
+				return null;
+			open++;
+		}
+		try {
+			return new PooledConnection(this, factory.create());
+		} catch (SQLException | RuntimeException e) {
+			synchronized (this) {
+				open--;
+				notify();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Return a borrowed connection to the pool
+	 * 
+	 * @param c The connection being returned
+	 */
+	void release(PooledConnection c) {
+		if (!closed && !c.isBroken()) {
+			// never hand out a connection that is still in a transaction
+			Connection conn = c.getConnection();
+			try {
+				if (!conn.getAutoCommit()) {
+					try {
+						conn.rollback();
+					} finally {
+						conn.setAutoCommit(true);
+					}
+				}
+			} catch (SQLException e) {
+				c.invalidate();
+			}
+		}
+		if (closed || c.isBroken())
+			discard(c);
+		else {
+			idle.offer(c);
+			synchronized (this) {
+				notify();
+			}
+		}
+	}
+	
+	/**
+	 * Close a connection and free its place in the pool
+	 * 
+	 * @param c The connection to close
+	 */
+	private void discard(PooledConnection c) {
+		synchronized (this) {
+			open--;
+			// there is now room to open a connection for someone waiting
+			notify();
+		}
+		c.closeConnection();
+	}
+	
+	/**
+	 * Get the most connections that can be open at once
+	 * 
+	 * @return The size of the pool
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * Close every idle connection. Connections that are still borrowed are
+	 * closed when they are returned.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		PooledConnection c;
+		while ((c = idle.poll()) != null)
+			discard(c);
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+	
+	/**
+	 * Opens connections for a {@link ConnectionPool}
+	 * 
+	 * @author DonkeyCore
+	 */
+	public static interface ConnectionFactory {
+		
+		/**
+		 * Open a new connection
+		 * 
+		 * @return The new connection
+		 * @throws SQLException If the connection could not be opened
+		 */
+		public Connection create() throws SQLException;
+		
+	}
+	
+}
@@ -0,0 +1,107 @@
+package minigamemanager.api.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}. Prepared statements are
+ * kept for as long as the connection is open, so the same SQL is only
+ * prepared once per connection. Closing this returns the connection to the
+ * pool.
+ * 
+ * @author DonkeyCore
+ */
+public final class PooledConnection implements AutoCloseable {
+	
+	/**
+	 * The pool this connection belongs to
+	 */
+	private final ConnectionPool pool;
+	/**
+	 * The actual connection
+	 */
+	private final Connection conn;
+	/**
+	 * The statements prepared on this connection, by their SQL
+	 */
+	private final Map<String, PreparedStatement> statements = new HashMap<>();
+	/**
+	 * Whether the connection failed and should not be reused
+	 */
+	private boolean broken = false;
+	
+	PooledConnection(ConnectionPool pool, Connection conn) {
+		this.pool = pool;
+		this.conn = conn;
+	}
+	
+	/**
+	 * Get the actual connection
+	 * 
+	 * @return The JDBC connection
+	 */
+	public Connection getConnection() {
+		return conn;
+	}
+	
+	/**
+	 * Get a prepared statement for some SQL, preparing it if this connection
+	 * has not already done so. Parameters are cleared before it is returned.
+	 * 
+	 * @param sql The SQL of the statement
+	 * @return The prepared statement
+	 * @throws SQLException If the statement could not be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement ps = statements.get(sql);
+		if (ps == null) {
+			ps = conn.prepareStatement(sql);
+			statements.put(sql, ps);
+		} else
+			ps.clearParameters();
+		return ps;
+	}
+	
+	/**
+	 * Mark the connection as failed, so that it is closed instead of being
+	 * returned to the pool
+	 */
+	public void invalidate() {
+		broken = true;
+	}
+	
+	/**
+	 * Determine whether the connection has failed
+	 * 
+	 * @return Whether the connection should not be reused
+	 */
+	boolean isBroken() {
+		return broken;
+	}
+	
+	/**
+	 * Close the actual connection along with its statements
+	 */
+	void closeConnection() {
+		try {
+			for (PreparedStatement ps : statements.values())
+				ps.close();
+			statements.clear();
+			conn.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Return the connection to the pool
+	 */
+	@Override
+	public void close() {
+		pool.release(this);
+	}
+	
+}
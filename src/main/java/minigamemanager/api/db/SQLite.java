@@ -0,0 +1,50 @@
+package minigamemanager.api.db;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.commons.lang.Validate;
+
+public class SQLite {
+	
+	private final File file;
+	
+	public SQLite(File file) {
+		Validate.notNull(file, "File cannot be null");
+		this.file = file;
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Open a connection to the database file, creating it if needed. The
+	 * connection uses write-ahead logging, so a crash never corrupts the
+	 * database and reads don't wait for writes.
+	 * 
+	 * @return The new connection
+	 * @throws SQLException If the connection could not be opened
+	 */
+	public Connection connect() throws SQLException {
+		try {
+			Class.forName("org.sqlite.JDBC"); // ensure driver exists
+		} catch (ClassNotFoundException nodriver) {
+			throw new NoDriverException(nodriver);
+		}
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try (Statement s = conn.createStatement()) {
+			s.execute("PRAGMA journal_mode=WAL;");
+			s.execute("PRAGMA synchronous=NORMAL;");
+		} catch (SQLException e) {
+			conn.close();
+			throw e;
+		}
+		return conn;
+	}
+	
+}
@@ -1,6 +1,7 @@
 package minigamemanager.api.inventory;
 
 import java.io.ObjectInputStream.GetField;
+import java.util.List;
 
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
@@ -41,8 +42,8 @@ public class AchievementMenu extends PagedMenu {
 	
 	private static ItemStack[] getAchievementItems(PlayerProfile player) {
 		// TODO: Sort based on parent minigame into a nice format
-		Achievement[] as = MinigameManager.getMinigameManager().getAchievements();
-		ItemStack[] items = new ItemStack[as.length];
+		List<Achievement> as = MinigameManager.getMinigameManager().getAchievements();
+		ItemStack[] items = new ItemStack[as.size()];
 		int i = 0;
 		for(Achievement a : as) {
 			ItemStack item = a.getItem().clone();
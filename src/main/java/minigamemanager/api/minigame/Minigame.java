@@ -25,6 +25,7 @@ import org.bukkit.Location;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.PlayerInventory;
@@ -561,7 +562,8 @@ public abstract class Minigame implements MinigameShell {
 					}
 				}
 			};
-			listenEvent(lockListener);
+			// cancel moves before other listeners see them
+			listenEvent(lockListener, EventPriority.LOWEST, false);
 		}
 	}
 	
@@ -1106,9 +1108,64 @@ public abstract class Minigame implements MinigameShell {
 	 * @param <E> The event type to listen for
 	 * @param listener What to do when the event happens
 	 */
-	@SuppressWarnings("unchecked")
 	public <E extends Event> void listenEvent(EventListener<E> listener) {
-		MinigameManager.getMinigameManager().addListener(this, (Class<E>) ((ParameterizedType) (listener.getClass().getGenericInterfaces()[0])).getActualTypeArguments()[0], listener);
+		listenEvent(listener, EventPriority.NORMAL, false);
+	}
+	
+	/**
+	 * Create a listener for an event with a certain priority. Listeners with a
+	 * lower priority are called first.
+	 * 
+	 * @param <E> The event type to listen for
+	 * @param listener What to do when the event happens
+	 * @param priority When to call the listener relative to other listeners
+	 * @param ignoreCancelled Whether to skip the listener if the event has
+	 *            already been cancelled
+	 */
+	public <E extends Event> void listenEvent(EventListener<E> listener, EventPriority priority, boolean ignoreCancelled) {
+		MinigameManager.getMinigameManager().addListener(this, getEventClass(listener), listener, priority, ignoreCancelled, false);
+	}
+	
+	/**
+	 * Create a listener for an event that may be called off the main thread,
+	 * such as AsyncPlayerChatEvent. Listeners created with
+	 * {@link #listenEvent(EventListener)} never receive asynchronous events.
+	 * <br>
+	 * <b>Note:</b> The listener must be thread-safe, and must not touch the
+	 * world, players or rotation state other than through thread-safe methods.
+	 * 
+	 * @param <E> The event type to listen for
+	 * @param listener What to do when the event happens
+	 */
+	public <E extends Event> void listenAsyncEvent(EventListener<E> listener) {
+		listenAsyncEvent(listener, EventPriority.NORMAL, false);
+	}
+	
+	/**
+	 * Create a listener with a certain priority for an event that may be
+	 * called off the main thread
+	 * 
+	 * @param <E> The event type to listen for
+	 * @param listener What to do when the event happens
+	 * @param priority When to call the listener relative to other listeners
+	 * @param ignoreCancelled Whether to skip the listener if the event has
+	 *            already been cancelled
+	 * @see #listenAsyncEvent(EventListener)
+	 */
+	public <E extends Event> void listenAsyncEvent(EventListener<E> listener, EventPriority priority, boolean ignoreCancelled) {
+		MinigameManager.getMinigameManager().addListener(this, getEventClass(listener), listener, priority, ignoreCancelled, true);
+	}
+	
+	/**
+	 * Get the event class that a listener listens to
+	 * 
+	 * @param <E> The event type
+	 * @param listener The listener
+	 * @return The class of the listener's type argument
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends Event> Class<E> getEventClass(EventListener<E> listener) {
+		return (Class<E>) ((ParameterizedType) (listener.getClass().getGenericInterfaces()[0])).getActualTypeArguments()[0];
 	}
 	
 	/**
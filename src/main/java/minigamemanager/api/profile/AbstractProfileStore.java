@@ -0,0 +1,201 @@
+package minigamemanager.api.profile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.lang.Validate;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * A {@link ProfileStore} that does its work with blocking methods, run on a
+ * shared I/O executor. Subclasses only have to load and save a single
+ * profile, but should override the batch methods if they can do better than
+ * one profile at a time.
+ * 
+ * @author DonkeyCore
+ */
+public abstract class AbstractProfileStore implements ProfileStore {
+	
+	/**
+	 * The order profiles are scanned in, by the string form of their UUIDs
+	 */
+	protected static final Comparator<UUID> SCAN_ORDER = new Comparator<UUID>() {
+		
+		@Override
+		public int compare(UUID a, UUID b) {
+			return a.toString().compareTo(b.toString());
+		}
+	};
+	
+	/**
+	 * Runs the blocking methods that load profiles
+	 */
+	private final ListeningExecutorService executor;
+	/**
+	 * Runs the blocking methods that save profiles
+	 */
+	private final ListeningExecutorService writer;
+	
+	/**
+	 * Create a new profile store that loads and saves profiles on the same
+	 * executor
+	 * 
+	 * @param executor Runs the blocking methods
+	 */
+	protected AbstractProfileStore(ListeningExecutorService executor) {
+		this(executor, executor);
+	}
+	
+	/**
+	 * Create a new profile store that saves profiles on their own executor.
+	 * If the writer runs one task at a time, saves finish in the order they
+	 * were made, so an older save of a profile can never overwrite a newer
+	 * one.
+	 * 
+	 * @param executor Runs the blocking methods that load profiles
+	 * @param writer Runs the blocking methods that save profiles
+	 */
+	protected AbstractProfileStore(ListeningExecutorService executor, ListeningExecutorService writer) {
+		Validate.notNull(executor, "Executor cannot be null");
+		Validate.notNull(writer, "Writer cannot be null");
+		this.executor = executor;
+		this.writer = writer;
+	}
+	
+	/**
+	 * Load a player's data on the current thread
+	 * 
+	 * @param uuid The player's UUID
+	 * @return The player's data, or null if the player has never been saved
+	 * @throws Exception If the data could not be loaded
+	 */
+	protected abstract ProfileData loadProfile(UUID uuid) throws Exception;
+	
+	/**
+	 * Save a player's data on the current thread
+	 * 
+	 * @param uuid The player's UUID
+	 * @param data The data to save
+	 * @throws Exception If the data could not be saved
+	 */
+	protected abstract void saveProfile(UUID uuid, ProfileData data) throws Exception;
+	
+	/**
+	 * Load the data of several players on the current thread
+	 * 
+	 * @param uuids The UUIDs of the players
+	 * @return A modifiable map of UUIDs to data, without the players that have
+	 *         never been saved
+	 * @throws Exception If the data could not be loaded
+	 */
+	protected Map<UUID, ProfileData> loadProfiles(Collection<UUID> uuids) throws Exception {
+		Map<UUID, ProfileData> loaded = new HashMap<>();
+		for (UUID uuid : uuids) {
+			ProfileData data = loadProfile(uuid);
+			if (data != null)
+				loaded.put(uuid, data);
+		}
+		return loaded;
+	}
+	
+	/**
+	 * List the UUIDs of the next few profiles in the store on the current
+	 * thread, in {@link #SCAN_ORDER}. The default implementation does not
+	 * support listing profiles.
+	 * 
+	 * @param after The UUID to continue after, or null to start from the
+	 *            beginning
+	 * @param limit The most UUIDs to list
+	 * @return The UUIDs of the profiles after <i>after</i>, in order
+	 * @throws Exception If the profiles could not be listed
+	 */
+	protected List<UUID> scanProfiles(UUID after, int limit) throws Exception {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot list its profiles");
+	}
+	
+	/**
+	 * Save the data of several players on the current thread
+	 * 
+	 * @param profiles A map of UUIDs to the data to save
+	 * @throws Exception If the data could not be saved
+	 */
+	protected void saveProfiles(Map<UUID, ProfileData> profiles) throws Exception {
+		for (Entry<UUID, ProfileData> e : profiles.entrySet())
+			saveProfile(e.getKey(), e.getValue());
+	}
+	
+	@Override
+	public ListenableFuture<ProfileData> load(final UUID uuid) {
+		return executor.submit(new Callable<ProfileData>() {
+			
+			@Override
+			public ProfileData call() throws Exception {
+				return loadProfile(uuid);
+			}
+		});
+	}
+	
+	@Override
+	public ListenableFuture<Map<UUID, ProfileData>> loadAll(Collection<UUID> uuids) {
+		final Collection<UUID> copy = new ArrayList<>(uuids);
+		return executor.submit(new Callable<Map<UUID, ProfileData>>() {
+			
+			@Override
+			public Map<UUID, ProfileData> call() throws Exception {
+				return loadProfiles(copy);
+			}
+		});
+	}
+	
+	@Override
+	public ListenableFuture<Map<UUID, ProfileData>> scan(final UUID after, final int limit) {
+		return executor.submit(new Callable<Map<UUID, ProfileData>>() {
+			
+			@Override
+			public Map<UUID, ProfileData> call() throws Exception {
+				List<UUID> uuids = scanProfiles(after, limit);
+				Map<UUID, ProfileData> loaded = loadProfiles(uuids);
+				Map<UUID, ProfileData> page = new LinkedHashMap<>();
+				for (UUID uuid : uuids)
+					page.put(uuid, loaded.get(uuid));
+				return page;
+			}
+		});
+	}
+	
+	@Override
+	public ListenableFuture<Void> save(final UUID uuid, final ProfileData data) {
+		return writer.submit(new Callable<Void>() {
+			
+			@Override
+			public Void call() throws Exception {
+				saveProfile(uuid, data);
+				return null;
+			}
+		});
+	}
+	
+	@Override
+	public ListenableFuture<Void> saveAll(Map<UUID, ProfileData> profiles) {
+		final Map<UUID, ProfileData> copy = new HashMap<>(profiles);
+		return writer.submit(new Callable<Void>() {
+			
+			@Override
+			public Void call() throws Exception {
+				saveProfiles(copy);
+				return null;
+			}
+		});
+	}
+	
+}
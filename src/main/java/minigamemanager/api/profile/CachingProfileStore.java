@@ -0,0 +1,88 @@
+package minigamemanager.api.profile;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Copies every profile loaded from or saved to another store into an
+ * {@link OfflineProfileCache}, so the cache fills up as players are seen
+ * 
+ * @author DonkeyCore
+ */
+public class CachingProfileStore extends AbstractProfileStore {
+	
+	/**
+	 * The store profiles are actually kept in
+	 */
+	private final AbstractProfileStore store;
+	/**
+	 * The cache profiles are copied to
+	 */
+	private final OfflineProfileCache cache;
+	
+	/**
+	 * Create a new CachingProfileStore
+	 * 
+	 * @param store The store profiles are actually kept in
+	 * @param cache The cache profiles are copied to
+	 * @param executor Runs the store's operations
+	 */
+	public CachingProfileStore(AbstractProfileStore store, OfflineProfileCache cache, ListeningExecutorService executor) {
+		this(store, cache, executor, executor);
+	}
+	
+	/**
+	 * Create a new CachingProfileStore that saves profiles on their own
+	 * executor
+	 * 
+	 * @param store The store profiles are actually kept in
+	 * @param cache The cache profiles are copied to
+	 * @param executor Runs the store's loads
+	 * @param writer Runs the store's saves
+	 */
+	public CachingProfileStore(AbstractProfileStore store, OfflineProfileCache cache, ListeningExecutorService executor, ListeningExecutorService writer) {
+		super(executor, writer);
+		this.store = store;
+		this.cache = cache;
+	}
+	
+	@Override
+	protected ProfileData loadProfile(UUID uuid) throws Exception {
+		ProfileData data = store.loadProfile(uuid);
+		if (data != null)
+			cache.put(uuid, data);
+		return data;
+	}
+	
+	@Override
+	protected Map<UUID, ProfileData> loadProfiles(Collection<UUID> uuids) throws Exception {
+		Map<UUID, ProfileData> loaded = store.loadProfiles(uuids);
+		for (Entry<UUID, ProfileData> e : loaded.entrySet())
+			cache.put(e.getKey(), e.getValue());
+		return loaded;
+	}
+	
+	@Override
+	protected List<UUID> scanProfiles(UUID after, int limit) throws Exception {
+		return store.scanProfiles(after, limit);
+	}
+	
+	@Override
+	protected void saveProfile(UUID uuid, ProfileData data) throws Exception {
+		store.saveProfile(uuid, data);
+		cache.put(uuid, data);
+	}
+	
+	@Override
+	protected void saveProfiles(Map<UUID, ProfileData> profiles) throws Exception {
+		store.saveProfiles(profiles);
+		for (Entry<UUID, ProfileData> e : profiles.entrySet())
+			cache.put(e.getKey(), e.getValue());
+	}
+	
+}
@@ -0,0 +1,132 @@
+package minigamemanager.api.profile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Saves profiles to two stores, such as a database and a backup in config
+ * files. Profiles are loaded from the primary store, or from the mirror if
+ * the primary store does not have them or cannot be reached.
+ * 
+ * @author DonkeyCore
+ */
+public class MirroredProfileStore extends AbstractProfileStore {
+	
+	/**
+	 * The store profiles are loaded from
+	 */
+	private final AbstractProfileStore primary;
+	/**
+	 * The store profiles are copied to
+	 */
+	private final AbstractProfileStore mirror;
+	
+	/**
+	 * Create a new MirroredProfileStore
+	 * 
+	 * @param primary The store profiles are loaded from
+	 * @param mirror The store profiles are copied to
+	 * @param executor Runs both stores' operations
+	 */
+	public MirroredProfileStore(AbstractProfileStore primary, AbstractProfileStore mirror, ListeningExecutorService executor) {
+		this(primary, mirror, executor, executor);
+	}
+	
+	/**
+	 * Create a new MirroredProfileStore that saves profiles on their own
+	 * executor
+	 * 
+	 * @param primary The store profiles are loaded from
+	 * @param mirror The store profiles are copied to
+	 * @param executor Runs both stores' loads
+	 * @param writer Runs both stores' saves
+	 */
+	public MirroredProfileStore(AbstractProfileStore primary, AbstractProfileStore mirror, ListeningExecutorService executor, ListeningExecutorService writer) {
+		super(executor, writer);
+		this.primary = primary;
+		this.mirror = mirror;
+	}
+	
+	@Override
+	protected ProfileData loadProfile(UUID uuid) throws Exception {
+		ProfileData data;
+		try {
+			data = primary.loadProfile(uuid);
+		} catch (Exception e) {
+			// the mirror has a copy of everything that was saved, but a player it
+			// doesn't have may still be in the primary store
+			try {
+				data = mirror.loadProfile(uuid);
+			} catch (Exception ex) {
+				e.addSuppressed(ex);
+				throw e;
+			}
+			if (data == null)
+				throw e;
+			return data;
+		}
+		return data == null ? mirror.loadProfile(uuid) : data;
+	}
+	
+	@Override
+	protected Map<UUID, ProfileData> loadProfiles(Collection<UUID> uuids) throws Exception {
+		Map<UUID, ProfileData> loaded;
+		try {
+			loaded = primary.loadProfiles(uuids);
+		} catch (Exception e) {
+			try {
+				loaded = mirror.loadProfiles(uuids);
+			} catch (Exception ex) {
+				e.addSuppressed(ex);
+				throw e;
+			}
+			for (UUID uuid : uuids) {
+				if (!loaded.containsKey(uuid))
+					throw e;
+			}
+			return loaded;
+		}
+		List<UUID> missing = new ArrayList<>();
+		for (UUID uuid : uuids) {
+			if (!loaded.containsKey(uuid))
+				missing.add(uuid);
+		}
+		if (!missing.isEmpty())
+			loaded.putAll(mirror.loadProfiles(missing));
+		return loaded;
+	}
+	
+	@Override
+	protected List<UUID> scanProfiles(UUID after, int limit) throws Exception {
+		// a profile may only be in one of the stores, so both are listed
+		TreeSet<UUID> uuids = new TreeSet<>(SCAN_ORDER);
+		uuids.addAll(primary.scanProfiles(after, limit));
+		uuids.addAll(mirror.scanProfiles(after, limit));
+		List<UUID> page = new ArrayList<>(limit);
+		for (UUID uuid : uuids) {
+			if (page.size() == limit)
+				break;
+			page.add(uuid);
+		}
+		return page;
+	}
+	
+	@Override
+	protected void saveProfile(UUID uuid, ProfileData data) throws Exception {
+		primary.saveProfile(uuid, data);
+		mirror.saveProfile(uuid, data);
+	}
+	
+	@Override
+	protected void saveProfiles(Map<UUID, ProfileData> profiles) throws Exception {
+		primary.saveProfiles(profiles);
+		mirror.saveProfiles(profiles);
+	}
+	
+}
@@ -0,0 +1,293 @@
+package minigamemanager.api.profile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A cache of the ELO, games played and currency of every player seen so far,
+ * kept in a memory-mapped file rather than on the heap. The file is a hash
+ * table of fixed-width records using open addressing, so looking up a player
+ * takes a few reads no matter how many players are cached, and the operating
+ * system decides how much of it stays in memory.<br>
+ * The table has a fixed capacity. Once it is 70% full, players that are not
+ * cached yet are no longer added.
+ * 
+ * @author DonkeyCore
+ */
+public final class OfflineProfileCache implements Closeable {
+	
+	/**
+	 * Identifies a cache file
+	 */
+	private static final int MAGIC = 0x4D4D5043;
+	/**
+	 * The version of the file layout
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * Size of the header: magic, version, capacity and size
+	 */
+	private static final int HEADER = 16;
+	/**
+	 * Size of a record: UUID (2 longs), ELO, games played and currency
+	 */
+	private static final int RECORD = 40;
+	/**
+	 * The largest capacity that still fits in a single mapping
+	 */
+	private static final int MAX_CAPACITY = 1 << 25;
+	
+	/**
+	 * The open file
+	 */
+	private final RandomAccessFile raf;
+	/**
+	 * The mapped contents of the file
+	 */
+	private final MappedByteBuffer buffer;
+	/**
+	 * The amount of slots in the table, always a power of 2
+	 */
+	private final int capacity;
+	/**
+	 * The most players that will be cached
+	 */
+	private final int maxSize;
+	/**
+	 * The amount of players cached
+	 */
+	private int size;
+	
+	/**
+	 * Open a cache file, creating it if it does not exist. If the file was
+	 * made with a different capacity, it is cleared.
+	 * 
+	 * @param file The cache file
+	 * @param capacity The amount of slots in the table, rounded up to a power
+	 *            of 2
+	 * @throws IOException If the file could not be opened
+	 */
+	public OfflineProfileCache(File file, int capacity) throws IOException {
+		Validate.notNull(file, "File cannot be null");
+		Validate.isTrue(capacity > 0 && capacity <= MAX_CAPACITY, "Capacity must be within 1-" + MAX_CAPACITY);
+		int cap = 1;
+		while (cap < capacity)
+			cap <<= 1;
+		this.capacity = cap;
+		this.maxSize = (int) (this.capacity * 0.7);
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		this.raf = new RandomAccessFile(file, "rw");
+		long length = HEADER + (long) this.capacity * RECORD;
+		boolean valid = raf.length() == length && raf.readInt() == MAGIC && raf.readInt() == VERSION && raf.readInt() == this.capacity;
+		if (!valid) {
+			// start over, the cache is rebuilt as profiles are loaded and saved
+			raf.setLength(0);
+			raf.setLength(length);
+		}
+		this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+		if (valid)
+			this.size = buffer.getInt(12);
+		else {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putInt(8, this.capacity);
+			buffer.putInt(12, 0);
+		}
+	}
+	
+	/**
+	 * Find the slot of a player
+	 * 
+	 * @param uuid The player's UUID
+	 * @return The player's slot, or -(slot + 1) of the empty slot where the
+	 *         player would go
+	 */
+	private int find(UUID uuid) {
+		long msb = uuid.getMostSignificantBits(), lsb = uuid.getLeastSignificantBits();
+		long h = msb ^ lsb;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		int mask = capacity - 1;
+		int slot = (int) h & mask;
+		while (true) {
+			int pos = HEADER + slot * RECORD;
+			long m = buffer.getLong(pos), l = buffer.getLong(pos + 8);
+			if (m == msb && l == lsb)
+				return slot;
+			if (m == 0 && l == 0)
+				return -(slot + 1);
+			slot = (slot + 1) & mask;
+		}
+	}
+	
+	/**
+	 * Cache a player's data, replacing anything already cached for them
+	 * 
+	 * @param uuid The player's UUID
+	 * @param data The player's data
+	 * @return Whether the player is cached, which is false if the cache is
+	 *         full and the player was not already in it
+	 */
+	public synchronized boolean put(UUID uuid, ProfileData data) {
+		Validate.isTrue(uuid.getMostSignificantBits() != 0 || uuid.getLeastSignificantBits() != 0, "The nil UUID cannot be cached");
+		int slot = find(uuid);
+		if (slot < 0) {
+			if (size >= maxSize)
+				return false;
+			slot = -(slot + 1);
+			buffer.putLong(HEADER + slot * RECORD, uuid.getMostSignificantBits());
+			buffer.putLong(HEADER + slot * RECORD + 8, uuid.getLeastSignificantBits());
+			buffer.putInt(12, ++size);
+		}
+		int pos = HEADER + slot * RECORD;
+		buffer.putLong(pos + 16, data.getELO());
+		buffer.putLong(pos + 24, data.getGamesPlayed());
+		buffer.putDouble(pos + 32, data.getCurrency());
+		return true;
+	}
+	
+	/**
+	 * Determine whether a player is cached
+	 * 
+	 * @param uuid The player's UUID
+	 * @return Whether the player is cached
+	 */
+	public synchronized boolean contains(UUID uuid) {
+		return find(uuid) >= 0;
+	}
+	
+	/**
+	 * Get a player's cached ELO rating
+	 * 
+	 * @param uuid The player's UUID
+	 * @param def The rating to return if the player is not cached
+	 * @return The player's ELO rating
+	 */
+	public synchronized long getELO(UUID uuid, long def) {
+		int slot = find(uuid);
+		return slot < 0 ? def : buffer.getLong(HEADER + slot * RECORD + 16);
+	}
+	
+	/**
+	 * Get a player's cached data
+	 * 
+	 * @param uuid The player's UUID
+	 * @return A copy of the player's cached data, or null if the player is not
+	 *         cached
+	 */
+	public synchronized CachedProfile get(UUID uuid) {
+		int slot = find(uuid);
+		return slot < 0 ? null : read(slot);
+	}
+	
+	private CachedProfile read(int slot) {
+		int pos = HEADER + slot * RECORD;
+		return new CachedProfile(new UUID(buffer.getLong(pos), buffer.getLong(pos + 8)), buffer.getLong(pos + 16), buffer.getLong(pos + 24), buffer.getDouble(pos + 32));
+	}
+	
+	/**
+	 * Get the cached players with the highest ELO ratings
+	 * 
+	 * @param limit The most players to return
+	 * @return The players, highest rating first
+	 */
+	public synchronized List<CachedProfile> getTopELO(int limit) {
+		Comparator<CachedProfile> byELO = new Comparator<CachedProfile>() {
+			
+			@Override
+			public int compare(CachedProfile a, CachedProfile b) {
+				return Long.compare(a.getELO(), b.getELO());
+			}
+		};
+		if (limit <= 0)
+			return new ArrayList<>();
+		// keep only the best so far, lowest first so it is the one replaced
+		PriorityQueue<CachedProfile> top = new PriorityQueue<>(limit, byELO);
+		for (int slot = 0; slot < capacity; slot++) {
+			int pos = HEADER + slot * RECORD;
+			if (buffer.getLong(pos) == 0 && buffer.getLong(pos + 8) == 0)
+				continue;
+			if (top.size() < limit)
+				top.add(read(slot));
+			else if (buffer.getLong(pos + 16) > top.peek().getELO()) {
+				top.poll();
+				top.add(read(slot));
+			}
+		}
+		List<CachedProfile> list = new ArrayList<>(top);
+		Collections.sort(list, Collections.reverseOrder(byELO));
+		return list;
+	}
+	
+	/**
+	 * Get the amount of players cached
+	 * 
+	 * @return The amount of players
+	 */
+	public synchronized int size() {
+		return size;
+	}
+	
+	/**
+	 * Write any changes to the file
+	 */
+	public synchronized void force() {
+		buffer.force();
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		buffer.force();
+		raf.close();
+	}
+	
+	/**
+	 * A player's data, as cached by an {@link OfflineProfileCache}
+	 * 
+	 * @author DonkeyCore
+	 */
+	public static final class CachedProfile {
+		
+		private final UUID uuid;
+		private final long elo, gamesPlayed;
+		private final double currency;
+		
+		private CachedProfile(UUID uuid, long elo, long gamesPlayed, double currency) {
+			this.uuid = uuid;
+			this.elo = elo;
+			this.gamesPlayed = gamesPlayed;
+			this.currency = currency;
+		}
+		
+		public UUID getUUID() {
+			return uuid;
+		}
+		
+		public long getELO() {
+			return elo;
+		}
+		
+		public long getGamesPlayed() {
+			return gamesPlayed;
+		}
+		
+		public double getCurrency() {
+			return currency;
+		}
+		
+	}
+	
+}
@@ -1,20 +1,41 @@
 package minigamemanager.api.profile;
 
-import java.io.IOException;
-import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
 
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
 import minigamemanager.api.achievement.Achievement;
+import minigamemanager.api.achievement.AchievementRegistry;
 import minigamemanager.api.util.ELO;
 import minigamemanager.api.util.ELO.GameResult;
 import minigamemanager.config.MessageType;
-import minigamemanager.config.MinigameSettings;
 import minigamemanager.core.MinigameManager;
 
 public class PlayerProfile {
@@ -28,9 +49,43 @@ public class PlayerProfile {
 	 */
 	private final ProfileData data;
 	/**
-	 * All active player profiles - only 1 per player
+	 * When this profile was last looked up
+	 */
+	private volatile long lastAccess = System.currentTimeMillis();
+	/**
+	 * The last background save of this profile, or null if there has not been
+	 * one
+	 */
+	private volatile Future<?> saving;
+	/**
+	 * Whether the data was loaded from the {@link ProfileStore}. If not, this
+	 * is a temporary profile that is never saved, so it cannot overwrite the
+	 * player's real stats.
+	 */
+	private volatile boolean loaded;
+	/**
+	 * The load that will fill in this temporary profile, or null if loading
+	 * failed and should be tried again
+	 */
+	private volatile ListenableFuture<ProfileData> pending;
+	/**
+	 * The ELO rating the profile started with, so that changes made before the
+	 * real data is loaded can be added to it
+	 */
+	private final long startELO;
+	/**
+	 * All loaded player profiles, by UUID - only 1 per player
+	 */
+	private static final Map<UUID, PlayerProfile> profiles = new ConcurrentHashMap<>();
+	/**
+	 * Profiles being loaded from the database in the background
+	 */
+	private static final ConcurrentMap<UUID, Prefetch> loading = new ConcurrentHashMap<>();
+	/**
+	 * How long a prefetched profile is kept for a player who has not joined
+	 * yet, since players can take a while to join after logging in
 	 */
-	private static final List<PlayerProfile> profiles = new ArrayList<>();
+	private static final long PREFETCH_GRACE_MILLIS = 60000;
 	
 	/**
 	 * Create a new PlayerProfile from the given UUID and ProfileData. WARNING:
@@ -41,52 +96,327 @@ public class PlayerProfile {
 	 * @param data The data to use for this profile
 	 */
 	private PlayerProfile(UUID uuid, ProfileData data) {
-		this.uuid = uuid;
-		this.data = data;
-		for (PlayerProfile p : profiles) {
-			if (p.getUUID().equals(uuid))
-				profiles.remove(p);
-		}
-		profiles.add(this);
+		this(uuid, data, true);
 	}
 	
 	/**
-	 * Create a new PlayerProfile
+	 * Create a new PlayerProfile from the given UUID and ProfileData, and
+	 * replace any existing profile for the given UUID
 	 * 
 	 * @param uuid The player's UUID
+	 * @param data The data to use for this profile
+	 * @param loaded Whether the data was loaded from the {@link ProfileStore}
 	 */
-	private PlayerProfile(UUID uuid) {
+	private PlayerProfile(UUID uuid, ProfileData data, boolean loaded) {
 		this.uuid = uuid;
-		this.data = MinigameManager.getMinigameManager().getPlayerProfileConfig().getProfileData(this);
-		profiles.add(this);
+		this.data = data;
+		this.loaded = loaded;
+		this.startELO = data.getELO();
+		data.clearDirty();
+		profiles.put(uuid, this);
 	}
 	
 	/**
-	 * Get a player's corresponding PlayerProfile
+	 * Get a player's corresponding PlayerProfile. If the profile is not loaded
+	 * yet, this waits for it to be loaded from the {@link ProfileStore}, so
+	 * players' profiles should be loaded in advance with
+	 * {@link #prefetchProfile(UUID)} whenever possible. If loading takes longer
+	 * than {@link minigamemanager.config.MinigameSettings#mysqlLoadTimeout()
+	 * the load timeout} or fails, a temporary profile is returned instead,
+	 * see {@link #isLoaded()}.
 	 * 
 	 * @param uuid The player's UUID
 	 * 
 	 * @return A PlayerProfile instance corresponding with the UUID
 	 */
 	public static PlayerProfile getPlayerProfile(UUID uuid) {
-		for (PlayerProfile profile : profiles) {
-			if (profile.getUUID().equals(uuid))
-				return profile;
+		PlayerProfile profile = profiles.get(uuid);
+		if (profile != null) {
+			profile.lastAccess = System.currentTimeMillis();
+			return profile;
+		}
+		Prefetch prefetch = loading.remove(uuid);
+		ListenableFuture<ProfileData> future = prefetch != null ? prefetch.future : MinigameManager.getMinigameManager().getProfileStore().load(uuid);
+		return load(uuid, future, System.currentTimeMillis() + MinigameManager.getMinigameManager().getMinigameSettings().mysqlLoadTimeout());
+	}
+	
+	/**
+	 * Get the PlayerProfiles of several players at once. Profiles that are
+	 * already loaded are used as they are, and all of the others are loaded
+	 * from the {@link ProfileStore} together, which is much faster than
+	 * calling {@link #getPlayerProfile(UUID)} for each of them. Like
+	 * {@link #getPlayerProfile(UUID)}, this waits at most
+	 * {@link minigamemanager.config.MinigameSettings#mysqlLoadTimeout() the
+	 * load timeout} in total.
+	 * 
+	 * @param uuids The players' UUIDs
+	 * 
+	 * @return A map of UUIDs to PlayerProfiles, in the same order as the UUIDs
+	 */
+	public static Map<UUID, PlayerProfile> getProfiles(Collection<UUID> uuids) {
+		Map<UUID, PlayerProfile> result = new LinkedHashMap<>();
+		Map<UUID, ListenableFuture<ProfileData>> prefetched = new HashMap<>();
+		List<UUID> missing = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		long deadline = now + MinigameManager.getMinigameManager().getMinigameSettings().mysqlLoadTimeout();
+		for (UUID uuid : uuids) {
+			if (result.containsKey(uuid))
+				continue;
+			PlayerProfile profile = profiles.get(uuid);
+			if (profile != null) {
+				profile.lastAccess = now;
+				result.put(uuid, profile);
+				continue;
+			}
+			// keep the order of the UUIDs
+			result.put(uuid, null);
+			Prefetch prefetch = loading.remove(uuid);
+			if (prefetch != null)
+				prefetched.put(uuid, prefetch.future);
+			else
+				missing.add(uuid);
+		}
+		ListenableFuture<Map<UUID, ProfileData>> loaded = null;
+		if (!missing.isEmpty())
+			loaded = MinigameManager.getMinigameManager().getProfileStore().loadAll(missing);
+		for (Entry<UUID, PlayerProfile> e : result.entrySet()) {
+			if (e.getValue() != null)
+				continue;
+			final UUID uuid = e.getKey();
+			ListenableFuture<ProfileData> future = prefetched.get(uuid);
+			if (future == null) {
+				future = Futures.transform(loaded, new Function<Map<UUID, ProfileData>, ProfileData>() {
+					
+					@Override
+					public ProfileData apply(Map<UUID, ProfileData> all) {
+						return all.get(uuid);
+					}
+				});
+			}
+			e.setValue(load(uuid, future, deadline));
+		}
+		return result;
+	}
+	
+	/**
+	 * Create a player's profile once its data is loaded. If the data is not
+	 * loaded by the deadline, or could not be loaded, a temporary profile is
+	 * created instead, and it is filled in once the data is loaded.
+	 * 
+	 * @param uuid The player's UUID
+	 * @param future The future of the player's data
+	 * @param deadline When to stop waiting, in milliseconds since the epoch
+	 * 
+	 * @return The new PlayerProfile
+	 */
+	private static PlayerProfile load(UUID uuid, ListenableFuture<ProfileData> future, long deadline) {
+		try {
+			return create(uuid, future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+		} catch (TimeoutException e) {
+			MinigameManager.getPlugin().getLogger().warning("Loading the profile of " + uuid + " is taking a long time! A temporary profile will be used until it is loaded.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// starting from scratch would overwrite the player's saved stats
+			MinigameManager.getPlugin().getLogger().log(Level.SEVERE, "Could not load the profile of " + uuid + "! A temporary profile will be used until it is loaded.", e.getCause());
+			future = null;
+		}
+		PlayerProfile profile = new PlayerProfile(uuid, newData(), false);
+		if (future != null)
+			profile.fillInLater(future);
+		return profile;
+	}
+	
+	/**
+	 * Create the profile for loaded data
+	 * 
+	 * @param uuid The player's UUID
+	 * @param data The loaded data, or null to start the player from scratch
+	 * 
+	 * @return The new PlayerProfile
+	 */
+	private static PlayerProfile create(UUID uuid, ProfileData data) {
+		return new PlayerProfile(uuid, data == null ? newData() : data);
+	}
+	
+	/**
+	 * Create the data of a player who is starting from scratch
+	 * 
+	 * @return New data with the default ELO rating
+	 */
+	private static ProfileData newData() {
+		ProfileData data = new ProfileData();
+		data.setELO(MinigameManager.getMinigameManager().getMinigameSettings().defaultELO());
+		return data;
+	}
+	
+	/**
+	 * Fill in this temporary profile once its data is loaded
+	 * 
+	 * @param future The future of the player's data
+	 */
+	private void fillInLater(final ListenableFuture<ProfileData> future) {
+		pending = future;
+		Futures.addCallback(future, new FutureCallback<ProfileData>() {
+			
+			@Override
+			public void onSuccess(final ProfileData loaded) {
+				if (!MinigameManager.getPlugin().isEnabled())
+					return;
+				// the profile is only changed on the main thread
+				Bukkit.getScheduler().runTask(MinigameManager.getPlugin(), new Runnable() {
+					
+					@Override
+					public void run() {
+						fillIn(loaded);
+					}
+				});
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				MinigameManager.getPlugin().getLogger().log(Level.SEVERE, "Could not load the profile of " + uuid + ", will try again later", t);
+				// loaded again on the next flush
+				if (pending == future)
+					pending = null;
+			}
+		});
+	}
+	
+	/**
+	 * Replace the data of this temporary profile with the loaded data. Changes
+	 * made to the temporary profile are kept on top of the loaded data: games
+	 * played and money are added, the ELO rating is changed by as much as it
+	 * changed here, and achievements are combined.
+	 * 
+	 * @param loaded The loaded data, or null if the player has never been
+	 *            saved
+	 */
+	private void fillIn(ProfileData loaded) {
+		// the profile may have been unloaded in the meantime
+		if (this.loaded || profiles.get(uuid) != this)
+			return;
+		if (loaded != null) {
+			boolean changed = data.isDirty();
+			data.setELO(loaded.getELO() + data.getELO() - startELO);
+			data.setCurrency(loaded.getCurrency() + data.getCurrency());
+			data.setGamesPlayed(loaded.getGamesPlayed() + data.getGamesPlayed());
+			Set<Integer> achievements = new LinkedHashSet<>();
+			for (int id : loaded.getAchievements())
+				achievements.add(id);
+			for (int id : data.getAchievements())
+				achievements.add(id);
+			int[] a = new int[achievements.size()];
+			int i = 0;
+			for (int id : achievements)
+				a[i++] = id;
+			data.setAchievements(a);
+			if (!changed)
+				data.clearDirty();
+		}
+		this.loaded = true;
+	}
+	
+	/**
+	 * Determine whether this profile holds the player's saved data. A profile
+	 * that is not loaded yet is a temporary one, handed out because loading
+	 * the saved data took too long. It can be used as usual, but it is not
+	 * saved until the saved data is loaded and added to it.
+	 * 
+	 * @return Whether the profile's data was loaded
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+	
+	/**
+	 * Start loading a player's profile in the background, so that it is ready
+	 * by the time it is needed. Does nothing if the profile is already loaded
+	 * or being loaded. Safe to call from any thread.
+	 * 
+	 * @param uuid The player's UUID
+	 */
+	public static void prefetchProfile(UUID uuid) {
+		if (profiles.containsKey(uuid))
+			return;
+		// claim the UUID before starting the load, so that only one load is started for it
+		final SettableFuture<ProfileData> future = SettableFuture.create();
+		if (loading.putIfAbsent(uuid, new Prefetch(future)) != null)
+			return;
+		Futures.addCallback(MinigameManager.getMinigameManager().getProfileStore().load(uuid), new FutureCallback<ProfileData>() {
+			
+			@Override
+			public void onSuccess(ProfileData data) {
+				future.set(data);
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				future.setException(t);
+			}
+		});
+	}
+	
+	/**
+	 * Unload the profiles of offline players that have not been used for a
+	 * while. If there are still more profiles loaded than the maximum, the
+	 * least recently used offline profiles are unloaded as well. Profiles of
+	 * online players are never unloaded, and neither are profiles with changes
+	 * that have not been saved yet, see {@link #flushProfiles()}.
+	 * 
+	 * @param maxSize The most profiles to keep loaded
+	 * @param idleMillis How long an offline player's profile may go unused
+	 *            before it is unloaded
+	 * @return The amount of profiles unloaded
+	 */
+	public static int evictProfiles(int maxSize, long idleMillis) {
+		long now = System.currentTimeMillis();
+		// drop profiles that were loaded for players who never joined
+		for (Entry<UUID, Prefetch> e : loading.entrySet()) {
+			Prefetch p = e.getValue();
+			if (p.future.isDone() && now - p.started >= PREFETCH_GRACE_MILLIS && Bukkit.getPlayer(e.getKey()) == null)
+				loading.remove(e.getKey(), e.getValue());
 		}
-		MinigameSettings s = MinigameManager.getMinigameManager().getMinigameSettings();
-		if (s.mysqlEnabled()) {
-			try {
-				ProfileDatabase pdb = new ProfileDatabase(s.mysqlIP(), s.mysqlPort(), s.mysqlDatabase(), s.mysqlUsername(), s.mysqlPassword());
-				PlayerProfile p = pdb.getProfile(uuid);
-				if (p == null)
-					p = new PlayerProfile(uuid);
-				pdb.close();
-				return p;
-			} catch (SQLException | IOException e) {
-				e.printStackTrace();
+		List<PlayerProfile> offline = new ArrayList<>();
+		int evicted = 0;
+		for (PlayerProfile p : profiles.values()) {
+			if (Bukkit.getPlayer(p.uuid) != null)
+				continue;
+			if (now - p.lastAccess >= idleMillis) {
+				if (p.evict())
+					evicted++;
+			} else
+				offline.add(p);
+		}
+		if (profiles.size() > maxSize) {
+			// least recently used first
+			Collections.sort(offline, new Comparator<PlayerProfile>() {
+				
+				@Override
+				public int compare(PlayerProfile a, PlayerProfile b) {
+					return Long.compare(a.lastAccess, b.lastAccess);
+				}
+			});
+			for (PlayerProfile p : offline) {
+				if (profiles.size() <= maxSize)
+					break;
+				if (p.evict())
+					evicted++;
 			}
 		}
-		return new PlayerProfile(uuid);
+		return evicted;
+	}
+	
+	/**
+	 * Unload this profile if all of its changes have been saved
+	 * 
+	 * @return Whether the profile was unloaded
+	 */
+	private boolean evict() {
+		Future<?> s = saving;
+		if (data.isDirty() || (s != null && !s.isDone()))
+			return false;
+		return profiles.remove(uuid, this);
 	}
 	
 	/**
@@ -160,7 +490,10 @@ public class PlayerProfile {
 	private boolean updateELO(long otherELO, GameResult score) {
 		if (!MinigameManager.getMinigameManager().getMinigameSettings().eloEnabled())
 			return false;
-		data.setELO(ELO.getUpdatedELO(data.getELO(), otherELO, data.getGamesPlayed(), score));
+		long elo;
+		do {
+			elo = data.getELO();
+		} while (!data.compareAndSetELO(elo, ELO.getUpdatedELO(elo, otherELO, data.getGamesPlayed(), score)));
 		return true;
 	}
 	
@@ -169,7 +502,7 @@ public class PlayerProfile {
 	 * by 1.
 	 */
 	public void playedGame() {
-		data.setGamesPlayed(data.getGamesPlayed() + 1);
+		data.incrementGamesPlayed();
 	}
 	
 	/**
@@ -189,65 +522,45 @@ public class PlayerProfile {
 	 *         the achievement
 	 */
 	public boolean giveAchievement(Achievement achievement) {
-		verifyRegistered(achievement);
-		if(hasAchievement(achievement)) // make sure no duplicates
+		achievement = verifyRegistered(achievement);
+		if (!data.giveAchievement(achievement)) // make sure no duplicates
 			return false;
-		int hashCode = achievement.hashCode();
-		int[] old = data.getAchievements();
-		int[] achievements = new int[old.length + 1];
-		for (int i = 0; i < old.length; i++) {
-			if (hashCode == (achievements[i] = old[i])) { // copy and compare, make sure no weird duplicates
-				MinigameManager.getPlugin().getLogger().warning("A duplicate achievement that MinigameManager wasn't aware of exists!");
-				return false;
-			}
-		}
-		achievements[old.length] = hashCode;
-		data.setAchievements(achievements);
 		Player player = Bukkit.getPlayer(uuid);
-		Bukkit.getPlayer(uuid).sendMessage(MinigameManager.getMinigameManager().getMessages().getMessage(MessageType.UNLOCK_ACHIEVEMENT).replace("%name%", player.getName()).replace("%display%", player.getDisplayName()).replace("%achievement%", achievement.getName()));
+		player.sendMessage(MinigameManager.getMinigameManager().getMessages().getMessage(MessageType.UNLOCK_ACHIEVEMENT).replace("%name%", player.getName()).replace("%display%", player.getDisplayName()).replace("%achievement%", achievement.getName()));
 		return true;
 	}
 	
 	/**
-	 * Get an array of achievements that the player currently has
+	 * Get an array of achievements that the player currently has. Achievements
+	 * that are not registered are left out.
 	 * 
 	 * @return An array of achievements
 	 */
 	public Achievement[] getAchievements() {
+		AchievementRegistry registry = MinigameManager.getMinigameManager().getAchievementRegistry();
 		int[] h = data.getAchievements();
 		Achievement[] a = new Achievement[h.length];
-		for (int i = 0; i < a.length; i++)
-			a[i] = getAchievement(h[i]);
-		return a;
-	}
-	
-	/**
-	 * Get an achievement instance from the hash code of the instance
-	 * 
-	 * @param hashCode The hash code of the desired achievement
-	 * 
-	 * @return A registered achievement with the given hash code, or null if not
-	 *         found
-	 */
-	private Achievement getAchievement(int hashCode) {
-		for (Achievement a : MinigameManager.getMinigameManager().getAchievements()) {
-			if (a.hashCode() == hashCode)
-				return a;
+		int n = 0;
+		for (int hashCode : h) {
+			Achievement achievement = registry.getById(hashCode);
+			if (achievement != null)
+				a[n++] = achievement;
 		}
-		return null;
+		return n == a.length ? a : Arrays.copyOf(a, n);
 	}
 	
 	/**
 	 * Verify that a given achievement is registered
 	 * 
 	 * @param achievement The achievement to test
+	 * 
+	 * @return The registered instance of the achievement
 	 */
-	private void verifyRegistered(Achievement achievement) {
-		for (Achievement a : MinigameManager.getMinigameManager().getAchievements()) {
-			if (a.equals(achievement))
-				return;
-		}
-		throw new IllegalArgumentException(String.format("The achievement \"%s\" is invalid, make sure it is registered!", achievement.getName()));
+	private Achievement verifyRegistered(Achievement achievement) {
+		Achievement registered = MinigameManager.getMinigameManager().getAchievementRegistry().resolve(achievement);
+		if (registered == null)
+			throw new IllegalArgumentException(String.format("The achievement \"%s\" is invalid, make sure it is registered!", achievement.getName()));
+		return registered;
 	}
 	
 	/**
@@ -258,11 +571,7 @@ public class PlayerProfile {
 	 * @return Whether the player has the achievement
 	 */
 	public boolean hasAchievement(Achievement achievement) {
-		verifyRegistered(achievement);
-		for (Achievement a : getAchievements())
-			if (a.equals(achievement))
-				return true;
-		return false;
+		return data.hasAchievement(verifyRegistered(achievement));
 	}
 	
 	/**
@@ -275,7 +584,7 @@ public class PlayerProfile {
 		if (manager.useVaultEconomy())
 			manager.getVaultEconomy().depositPlayer(getPlayer(), money);
 		else
-			data.setCurrency(data.getCurrency() + money);
+			data.addCurrency(money);
 	}
 	
 	/**
@@ -287,13 +596,20 @@ public class PlayerProfile {
 	 *         have enough
 	 */
 	public boolean withdraw(double money) {
-		if (!canAfford(money))
-			return false;
 		MinigameManager manager = MinigameManager.getMinigameManager();
-		if (manager.useVaultEconomy())
+		if (manager.useVaultEconomy()) {
+			if (!canAfford(money))
+				return false;
 			manager.getVaultEconomy().withdrawPlayer(getPlayer(), money);
-		else
-			data.setCurrency(data.getCurrency() - money);
+			return true;
+		}
+		// check and take the money in one step, in case it is spent elsewhere at the same time
+		double balance;
+		do {
+			balance = data.getCurrency();
+			if (balance - money < 0)
+				return false;
+		} while (!data.compareAndSetCurrency(balance, balance - money));
 		return true;
 	}
 	
@@ -326,21 +642,107 @@ public class PlayerProfile {
 	}
 	
 	/**
-	 * Save the player's profile to the config or MySQL database
+	 * Save the player's profile in the background, if anything changed since
+	 * it was last saved
 	 */
 	public void saveProfile() {
-		MinigameManager manager = MinigameManager.getMinigameManager();
-		MinigameSettings s = manager.getMinigameSettings();
-		if (s.mysqlEnabled()) {
-			try {
-				ProfileDatabase pdb = new ProfileDatabase(s.mysqlIP(), s.mysqlPort(), s.mysqlDatabase(), s.mysqlUsername(), s.mysqlPassword());
-				pdb.saveProfile(this);
-				pdb.close();
-			} catch (SQLException | IOException e) {
-				e.printStackTrace();
+		saveProfiles(Collections.singleton(this));
+	}
+	
+	/**
+	 * Save several profiles at once in the background, skipping those that
+	 * have not changed since they were last saved and those that are not
+	 * {@link #isLoaded() loaded} yet. Profiles that could not be loaded are
+	 * loaded again instead. If saving fails, the
+	 * profiles are saved again on the next flush.
+	 * 
+	 * @param toSave The profiles to save
+	 * @return A future that completes once the profiles are saved
+	 */
+	public static ListenableFuture<Void> saveProfiles(Collection<PlayerProfile> toSave) {
+		final Map<PlayerProfile, ProfileData> changes = new HashMap<>();
+		Map<UUID, ProfileData> batch = new LinkedHashMap<>();
+		for (PlayerProfile p : toSave) {
+			// never save over stats that have not been loaded yet
+			if (!p.loaded) {
+				if (p.pending == null)
+					p.fillInLater(MinigameManager.getMinigameManager().getProfileStore().load(p.uuid));
+				continue;
+			}
+			// the store gets a copy, since the profile keeps changing while it is saved
+			ProfileData copy = p.data.takeChanges();
+			if (copy != null) {
+				changes.put(p, copy);
+				batch.put(p.uuid, copy);
+			}
+		}
+		if (batch.isEmpty())
+			return Futures.immediateFuture(null);
+		ProfileStore store = MinigameManager.getMinigameManager().getProfileStore();
+		ListenableFuture<Void> future;
+		if (batch.size() == 1) {
+			Entry<UUID, ProfileData> e = batch.entrySet().iterator().next();
+			future = store.save(e.getKey(), e.getValue());
+		} else
+			future = store.saveAll(batch);
+		Futures.addCallback(future, new FutureCallback<Void>() {
+			
+			@Override
+			public void onSuccess(Void result) {}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				MinigameManager.getPlugin().getLogger().log(Level.SEVERE, "Could not save " + changes.size() + " player profile(s), will try again later", t);
+				Runnable restore = new Runnable() {
+					
+					@Override
+					public void run() {
+						for (Entry<PlayerProfile, ProfileData> e : changes.entrySet())
+							e.getKey().data.restoreChanges(e.getValue());
+					}
+				};
+				// the profiles are only changed on the main thread
+				if (Bukkit.isPrimaryThread() || !MinigameManager.getPlugin().isEnabled())
+					restore.run();
+				else
+					Bukkit.getScheduler().runTask(MinigameManager.getPlugin(), restore);
 			}
+		});
+		for (PlayerProfile p : changes.keySet())
+			p.saving = future;
+		return future;
+	}
+	
+	/**
+	 * Save every loaded profile that changed since it was last saved, see
+	 * {@link #saveProfiles(Collection)}
+	 * 
+	 * @return A future that completes once the profiles are saved
+	 */
+	public static ListenableFuture<Void> flushProfiles() {
+		return saveProfiles(profiles.values());
+	}
+	
+	/**
+	 * A profile being loaded in advance by {@link #prefetchProfile(UUID)}
+	 * 
+	 * @author DonkeyCore
+	 */
+	private static final class Prefetch {
+		
+		/**
+		 * The load of the profile's data
+		 */
+		private final ListenableFuture<ProfileData> future;
+		/**
+		 * When the load was started
+		 */
+		private final long started = System.currentTimeMillis();
+		
+		private Prefetch(ListenableFuture<ProfileData> future) {
+			this.future = future;
 		}
-		manager.getPlayerProfileConfig().saveProfile(this);
+		
 	}
 	
 }
@@ -1,25 +1,98 @@
 package minigamemanager.api.profile;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.commons.lang.Validate;
 
+import minigamemanager.api.achievement.Achievement;
+import minigamemanager.api.achievement.AchievementRegistry;
+import minigamemanager.core.MinigameManager;
+
+/**
+ * The saved statistics of a player. The ELO rating, currency and games played
+ * can be read and changed from any thread without locking. Achievements must
+ * only be changed on the main thread, but can be read along with everything
+ * else from any thread with {@link #snapshot()}.
+ * 
+ * @author DonkeyCore
+ */
 public class ProfileData {
 	
+	/**
+	 * Dirty flag for the ELO rating
+	 */
+	public static final int ELO = 1;
+	/**
+	 * Dirty flag for the currency
+	 */
+	public static final int CURRENCY = 1 << 1;
+	/**
+	 * Dirty flag for the amount of games played
+	 */
+	public static final int GAMES_PLAYED = 1 << 2;
+	/**
+	 * Dirty flag for the achievements
+	 */
+	public static final int ACHIEVEMENTS = 1 << 3;
+	
 	/**
 	 * Player's ELO rating
 	 */
-	private long elo;
+	private final AtomicLong elo = new AtomicLong();
 	/**
-	 * Amount of money belonging to the player
+	 * Amount of money belonging to the player, stored as the bits of a double
+	 * 
+	 * @see Double#doubleToLongBits(double)
 	 */
-	private double currency;
+	private final AtomicLong currency = new AtomicLong(Double.doubleToLongBits(0));
 	/**
 	 * The amount of games this player has played
 	 */
-	private long gamesPlayed;
+	private final AtomicLong gamesPlayed = new AtomicLong();
 	/**
-	 * The player's list of achievements, stored as integers
+	 * The player's achievements as a bitset, indexed by the achievements'
+	 * ordinals
 	 */
-	private int[] achievements = new int[0];
+	private long[] achievements = new long[0];
+	/**
+	 * Hash codes of achievements the player has that were not registered when
+	 * the data was loaded. They are kept so that they are not lost when the
+	 * data is saved.
+	 */
+	private int[] unresolved = new int[0];
+	/**
+	 * IDs of the achievements given since the data was last saved
+	 */
+	private int[] unlocked = new int[0];
+	/**
+	 * When each of the {@link #unlocked} achievements was given, in
+	 * milliseconds since the epoch
+	 */
+	private long[] unlockTimes = new long[0];
+	/**
+	 * How many entries of {@link #unlocked} are used
+	 */
+	private int unlockCount = 0;
+	/**
+	 * Whether the whole list of achievements was replaced since the data was
+	 * last saved
+	 */
+	private boolean achievementsReplaced = false;
+	/**
+	 * The fields changed since the data was last saved
+	 */
+	private final AtomicInteger dirty = new AtomicInteger();
+	/**
+	 * How many changes are being made right now
+	 */
+	private final AtomicInteger writers = new AtomicInteger();
+	/**
+	 * Increased after every change, so {@link #snapshot()} can tell whether
+	 * anything changed while it was copying
+	 */
+	private final AtomicLong version = new AtomicLong();
 	
 	/**
 	 * Get the amount of games this player has played
@@ -27,7 +100,7 @@ public class ProfileData {
 	 * @return The amount of games played
 	 */
 	public long getGamesPlayed() {
-		return gamesPlayed;
+		return gamesPlayed.get();
 	}
 	
 	/**
@@ -36,7 +109,26 @@ public class ProfileData {
 	 * @param gamesPlayed The new number of games played
 	 */
 	public void setGamesPlayed(long gamesPlayed) {
-		this.gamesPlayed = gamesPlayed;
+		beginWrite();
+		try {
+			this.gamesPlayed.set(gamesPlayed);
+		} finally {
+			endWrite(GAMES_PLAYED);
+		}
+	}
+	
+	/**
+	 * Add 1 to the number of games this player has played
+	 * 
+	 * @return The new number of games played
+	 */
+	public long incrementGamesPlayed() {
+		beginWrite();
+		try {
+			return gamesPlayed.incrementAndGet();
+		} finally {
+			endWrite(GAMES_PLAYED);
+		}
 	}
 	
 	/**
@@ -45,7 +137,7 @@ public class ProfileData {
 	 * @return The player's ELO rating
 	 */
 	public long getELO() {
-		return elo;
+		return elo.get();
 	}
 	
 	/**
@@ -54,7 +146,31 @@ public class ProfileData {
 	 * @param elo The player's new ELO rating
 	 */
 	public void setELO(long elo) {
-		this.elo = elo;
+		beginWrite();
+		try {
+			this.elo.set(elo);
+		} finally {
+			endWrite(ELO);
+		}
+	}
+	
+	/**
+	 * Set the player's ELO rating, but only if it has not changed
+	 * 
+	 * @param expect The ELO rating the player should have
+	 * @param elo The player's new ELO rating
+	 * 
+	 * @return Whether the rating was set, or false if it was not the expected
+	 *         rating
+	 */
+	public boolean compareAndSetELO(long expect, long elo) {
+		beginWrite();
+		boolean set = false;
+		try {
+			return set = this.elo.compareAndSet(expect, elo);
+		} finally {
+			endWrite(set ? ELO : 0);
+		}
 	}
 	
 	/**
@@ -63,7 +179,55 @@ public class ProfileData {
 	 * @param money The amount of money for the player to have
 	 */
 	public void setCurrency(double money) {
-		this.currency = money;
+		beginWrite();
+		try {
+			currency.set(Double.doubleToLongBits(money));
+		} finally {
+			endWrite(CURRENCY);
+		}
+	}
+	
+	/**
+	 * Give the player money, or take it away with a negative amount
+	 * 
+	 * @param money The amount of money to add
+	 * 
+	 * @return The amount of money the player now has
+	 */
+	public double addCurrency(double money) {
+		beginWrite();
+		try {
+			long bits;
+			double updated;
+			do {
+				bits = currency.get();
+				updated = Double.longBitsToDouble(bits) + money;
+			} while (!currency.compareAndSet(bits, Double.doubleToLongBits(updated)));
+			return updated;
+		} finally {
+			endWrite(CURRENCY);
+		}
+	}
+	
+	/**
+	 * Set the amount of money this player has, but only if it has not changed.
+	 * The amounts are compared exactly, as with
+	 * {@link Double#doubleToLongBits(double)}.
+	 * 
+	 * @param expect The amount of money the player should have
+	 * @param money The amount of money for the player to have
+	 * 
+	 * @return Whether the amount was set, or false if it was not the expected
+	 *         amount
+	 */
+	public boolean compareAndSetCurrency(double expect, double money) {
+		beginWrite();
+		boolean set = false;
+		try {
+			return set = currency.compareAndSet(Double.doubleToLongBits(expect), Double.doubleToLongBits(money));
+		} finally {
+			endWrite(set ? CURRENCY : 0);
+		}
 	}
 	
 	/**
@@ -72,7 +236,28 @@ public class ProfileData {
 	 * @return The amount of money owned by the player
 	 */
 	public double getCurrency() {
-		return currency;
+		return Double.longBitsToDouble(currency.get());
+	}
+	
+	/**
+	 * Start changing the data, so that {@link #snapshot()} waits until the
+	 * change is done. Every call must be followed by {@link #endWrite(int)} in
+	 * a finally block, or snapshots would wait forever.
+	 */
+	private void beginWrite() {
+		writers.incrementAndGet();
+	}
+	
+	/**
+	 * Finish changing the data
+	 * 
+	 * @param fields A bitmask of the changed fields
+	 */
+	private void endWrite(int fields) {
+		version.incrementAndGet();
+		writers.decrementAndGet();
+		if (fields != 0)
+			markDirty(fields);
 	}
 	
 	/**
@@ -84,18 +269,306 @@ public class ProfileData {
 	 * @return The old list of achievement hash codes
 	 */
 	public int[] setAchievements(int[] achievements) {
-		int[] old = this.achievements;
-		this.achievements = achievements;
+		int[] old = getAchievements();
+		AchievementRegistry registry = getAchievementRegistry();
+		long[] bits = new long[0];
+		int[] unresolved = new int[achievements.length];
+		int u = 0;
+		for (int hashCode : achievements) {
+			Achievement a = registry == null ? null : registry.getById(hashCode);
+			if (a == null)
+				unresolved[u++] = hashCode;
+			else {
+				int ordinal = a.getOrdinal();
+				if ((ordinal >> 6) >= bits.length)
+					bits = Arrays.copyOf(bits, (ordinal >> 6) + 1);
+				bits[ordinal >> 6] |= 1L << ordinal;
+			}
+		}
+		beginWrite();
+		try {
+			this.achievements = bits;
+			this.unresolved = Arrays.copyOf(unresolved, u);
+			achievementsReplaced = true;
+		} finally {
+			endWrite(ACHIEVEMENTS);
+		}
 		return old;
 	}
 	
+	/**
+	 * Determine whether the player has an achievement
+	 * 
+	 * @param achievement The registered achievement to test for
+	 * 
+	 * @return Whether the player has the achievement
+	 */
+	public boolean hasAchievement(Achievement achievement) {
+		int ordinal = achievement.getOrdinal();
+		if (ordinal >= 0 && (ordinal >> 6) < achievements.length && (achievements[ordinal >> 6] & (1L << ordinal)) != 0)
+			return true;
+		if (unresolved.length == 0)
+			return false;
+		// the achievement may have been registered after the data was loaded
+		int hashCode = achievement.getId();
+		for (int i = 0; i < unresolved.length; i++) {
+			if (unresolved[i] == hashCode) {
+				if (ordinal < 0)
+					return true;
+				int[] u = new int[unresolved.length - 1];
+				System.arraycopy(unresolved, 0, u, 0, i);
+				System.arraycopy(unresolved, i + 1, u, i, u.length - i);
+				beginWrite();
+				try {
+					unresolved = u;
+					setBit(ordinal);
+				} finally {
+					endWrite(0);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Give the player an achievement
+	 * 
+	 * @param achievement The registered achievement to give
+	 * 
+	 * @return Whether the achievement was given, or false if the player
+	 *         already had it
+	 */
+	public boolean giveAchievement(Achievement achievement) {
+		int ordinal = achievement.getOrdinal();
+		Validate.isTrue(ordinal >= 0, "Achievement must be registered");
+		if (hasAchievement(achievement))
+			return false;
+		beginWrite();
+		try {
+			setBit(ordinal);
+			logUnlock(achievement.getId(), System.currentTimeMillis());
+		} finally {
+			endWrite(ACHIEVEMENTS);
+		}
+		return true;
+	}
+	
+	/**
+	 * Remember that an achievement was given, so that only the new
+	 * achievements have to be saved
+	 * 
+	 * @param id The ID of the achievement
+	 * @param time When the achievement was given
+	 */
+	private void logUnlock(int id, long time) {
+		if (unlockCount == unlocked.length) {
+			int size = Math.max(4, unlockCount * 2);
+			unlocked = Arrays.copyOf(unlocked, size);
+			unlockTimes = Arrays.copyOf(unlockTimes, size);
+		}
+		unlocked[unlockCount] = id;
+		unlockTimes[unlockCount++] = time;
+	}
+	
+	/**
+	 * Get the achievements given since the data was last saved
+	 * 
+	 * @return An array of achievement IDs, in the order they were given
+	 */
+	public int[] getUnlockedAchievements() {
+		return Arrays.copyOf(unlocked, unlockCount);
+	}
+	
+	/**
+	 * Get when each of the {@link #getUnlockedAchievements() unlocked
+	 * achievements} was given
+	 * 
+	 * @return An array of times in milliseconds since the epoch
+	 */
+	public long[] getUnlockTimes() {
+		return Arrays.copyOf(unlockTimes, unlockCount);
+	}
+	
+	/**
+	 * Determine whether the whole list of achievements was replaced since the
+	 * data was last saved, in which case the {@link #getUnlockedAchievements()
+	 * unlocked achievements} are not the only ones that changed
+	 * 
+	 * @return Whether every achievement needs to be saved
+	 */
+	public boolean isAchievementListReplaced() {
+		return achievementsReplaced;
+	}
+	
+	/**
+	 * Set an achievement's bit, making the bitset larger if needed
+	 * 
+	 * @param ordinal The ordinal of the achievement
+	 */
+	private void setBit(int ordinal) {
+		if ((ordinal >> 6) >= achievements.length) {
+			// make room for every registered achievement so this rarely happens
+			AchievementRegistry registry = getAchievementRegistry();
+			int size = Math.max(ordinal + 1, registry == null ? 0 : registry.size());
+			achievements = Arrays.copyOf(achievements, ((size - 1) >> 6) + 1);
+		}
+		achievements[ordinal >> 6] |= 1L << ordinal;
+	}
+	
+	/**
+	 * Get the registered achievements
+	 * 
+	 * @return The achievement registry, or null if MinigameManager is not
+	 *         running
+	 */
+	private static AchievementRegistry getAchievementRegistry() {
+		MinigameManager manager = MinigameManager.getMinigameManager();
+		return manager == null ? null : manager.getAchievementRegistry();
+	}
+	
+	/**
+	 * Copy the data, so the copy can be saved while the original keeps
+	 * changing. Every value in the copy is from the same moment: if the data
+	 * changes while it is being copied, it is copied again. Safe to call from
+	 * any thread, and never blocks the threads changing the data. The copy has
+	 * no changed fields.
+	 * 
+	 * @return A new ProfileData with the same values
+	 */
+	public ProfileData snapshot() {
+		ProfileData copy = new ProfileData();
+		while (true) {
+			long v = version.get();
+			if (writers.get() == 0) {
+				copy.elo.set(elo.get());
+				copy.currency.set(currency.get());
+				copy.gamesPlayed.set(gamesPlayed.get());
+				copy.achievements = achievements.clone();
+				copy.unresolved = unresolved.clone();
+				if (writers.get() == 0 && version.get() == v)
+					return copy;
+			}
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * Copy the data
+	 * 
+	 * @return A new ProfileData with the same values
+	 * @deprecated Use {@link #snapshot()} instead
+	 */
+	@Deprecated
+	public ProfileData copy() {
+		return snapshot();
+	}
+	
+	/**
+	 * Determine whether anything changed since the data was last saved
+	 * 
+	 * @return Whether the data needs to be saved
+	 */
+	public boolean isDirty() {
+		return dirty.get() != 0;
+	}
+	
+	/**
+	 * Get the fields changed since the data was last saved
+	 * 
+	 * @return A bitmask of {@link #ELO}, {@link #CURRENCY},
+	 *         {@link #GAMES_PLAYED} and {@link #ACHIEVEMENTS}
+	 */
+	public int getDirtyFields() {
+		return dirty.get();
+	}
+	
+	/**
+	 * Mark fields as changed since the data was last saved
+	 * 
+	 * @param fields A bitmask of the changed fields
+	 */
+	void markDirty(int fields) {
+		int d;
+		while ((d = dirty.get()) != (d | fields) && !dirty.compareAndSet(d, d | fields));
+	}
+	
+	/**
+	 * Mark the data as saved
+	 * 
+	 * @return The fields that were changed before the data was saved
+	 */
+	int clearDirty() {
+		unlockCount = 0;
+		achievementsReplaced = false;
+		return dirty.getAndSet(0);
+	}
+	
+	/**
+	 * Copy the data along with what changed since it was last saved, then
+	 * mark it as saved. If saving the copy fails, pass it to
+	 * {@link #restoreChanges(ProfileData)}.
+	 * 
+	 * @return A copy of the data to save, or null if nothing changed
+	 */
+	ProfileData takeChanges() {
+		if (!isDirty())
+			return null;
+		int[] ids = getUnlockedAchievements();
+		long[] times = getUnlockTimes();
+		boolean replaced = achievementsReplaced;
+		// changes made after this are saved next time, even if the snapshot already has them
+		int fields = clearDirty();
+		ProfileData copy = snapshot();
+		copy.unlocked = ids;
+		copy.unlockTimes = times;
+		copy.unlockCount = ids.length;
+		copy.achievementsReplaced = replaced;
+		copy.markDirty(fields);
+		return copy;
+	}
+	
+	/**
+	 * Mark the changes of a copy from {@link #takeChanges()} as not saved
+	 * again
+	 * 
+	 * @param changes The copy that could not be saved
+	 */
+	void restoreChanges(ProfileData changes) {
+		int[] ids = getUnlockedAchievements();
+		long[] times = getUnlockTimes();
+		unlockCount = 0;
+		for (int i = 0; i < changes.unlockCount; i++)
+			logUnlock(changes.unlocked[i], changes.unlockTimes[i]);
+		for (int i = 0; i < ids.length; i++)
+			logUnlock(ids[i], times[i]);
+		achievementsReplaced |= changes.achievementsReplaced;
+		markDirty(changes.getDirtyFields());
+	}
+	
 	/**
 	 * Get the list of achievements the player currently has
 	 * 
 	 * @return An array of achievement hash codes
 	 */
 	public int[] getAchievements() {
-		return achievements;
+		int count = unresolved.length;
+		for (long bits : achievements)
+			count += Long.bitCount(bits);
+		int[] h = Arrays.copyOf(unresolved, count);
+		if (count > unresolved.length) {
+			AchievementRegistry registry = getAchievementRegistry();
+			int n = unresolved.length;
+			for (int i = 0; i < achievements.length; i++) {
+				long bits = achievements[i];
+				while (bits != 0) {
+					int ordinal = (i << 6) + Long.numberOfTrailingZeros(bits);
+					h[n++] = registry.get(ordinal).getId();
+					bits &= bits - 1;
+				}
+			}
+		}
+		return h;
 	}
 	
 	/**
@@ -5,76 +5,803 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
+import org.apache.commons.lang.Validate;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import minigamemanager.api.db.ConnectionPool;
+import minigamemanager.api.db.ConnectionPool.ConnectionFactory;
 import minigamemanager.api.db.MySQL;
-import minigamemanager.config.MinigameSettings;
+import minigamemanager.api.db.PooledConnection;
 import minigamemanager.core.MinigameManager;
 
 public class ProfileDatabase implements Closeable {
 	
-	private final Object lock = new Object();
-	private final Connection conn;
-	private final Statement s;
+	/**
+	 * How many profiles to move at once when migrating achievements
+	 */
+	private static final int MIGRATION_BATCH_SIZE = 500;
+	/**
+	 * The most profiles to load with a single query
+	 */
+	private static final int MAX_BULK_LOAD = 256;
+	
+	/**
+	 * The connections used to access the database
+	 */
+	private final ConnectionPool pool;
+	/**
+	 * Whether the pool was created by this object, and should be closed with it
+	 */
+	private final boolean ownsPool;
+	/**
+	 * The name of the profiles table
+	 */
+	private final String table;
+	/**
+	 * The kind of database being used
+	 */
+	private final Dialect dialect;
+	/**
+	 * SQL to insert or update a profile, which also clears the old
+	 * achievements column
+	 */
+	private final String upsert;
+	/**
+	 * SQL to load a profile
+	 */
+	private final String select;
+	/**
+	 * The name of the achievements table
+	 */
+	private final String achievementsTable;
+	/**
+	 * SQL to add an achievement to a profile, unless it already has it
+	 */
+	private final String unlock;
+	/**
+	 * SQL to remove an achievement from a profile
+	 */
+	private final String revoke;
+	/**
+	 * SQL to load the achievements of a profile
+	 */
+	private final String selectAchievements;
+	/**
+	 * SQL to load the old achievements column of a profile
+	 */
+	private final String selectLegacy;
+	/**
+	 * The migration of the old achievements column, which profiles are not
+	 * loaded or saved until it is done
+	 */
+	private volatile ListenableFuture<Integer> migration = Futures.immediateFuture(0);
+	
+	/**
+	 * Create a ProfileDatabase using connections from a pool. The table is not
+	 * created, see {@link #createTable()}.
+	 * 
+	 * @param pool The connections used to access the database
+	 * @param table The name of the profiles table
+	 */
+	public ProfileDatabase(ConnectionPool pool, String table) {
+		this(pool, table, Dialect.MYSQL);
+	}
+	
+	/**
+	 * Create a ProfileDatabase using connections from a pool. The table is not
+	 * created, see {@link #createTable()}.
+	 * 
+	 * @param pool The connections used to access the database
+	 * @param table The name of the profiles table
+	 * @param dialect The kind of database the connections are to
+	 */
+	public ProfileDatabase(ConnectionPool pool, String table, Dialect dialect) {
+		this(pool, false, table, dialect);
+	}
 	
+	/**
+	 * Connect to a MySQL database with a single connection
+	 * 
+	 * @deprecated Opens a new connection every time, use the ProfileDatabase
+	 *             from {@link MinigameManager#getProfileDatabase()} instead
+	 */
+	@Deprecated
 	public ProfileDatabase(String ip, int port, String database) throws SQLException {
 		this(ip, port, database, null, null);
 	}
 	
-	public ProfileDatabase(String ip, int port, String database, String username, String password) throws SQLException {
-		this.conn = new MySQL(ip, port, database).connect(username, password);
-		this.s = conn.createStatement();
-		create();
+	/**
+	 * Connect to a MySQL database with a single connection
+	 * 
+	 * @deprecated Opens a new connection every time, use the ProfileDatabase
+	 *             from {@link MinigameManager#getProfileDatabase()} instead
+	 */
+	@Deprecated
+	public ProfileDatabase(final String ip, final int port, final String database, final String username, final String password) throws SQLException {
+		this(new ConnectionPool(new ConnectionFactory() {
+			
+			@Override
+			public Connection create() throws SQLException {
+				return new MySQL(ip, port, database).connect(username, password);
+			}
+		}, 1, 0, 0), true, String.valueOf(MinigameManager.getMinigameManager().getMinigameSettings().mysqlTables().get("profiles")), Dialect.MYSQL);
+		createTable();
+		migrateAchievements();
+	}
+	
+	private ProfileDatabase(ConnectionPool pool, boolean ownsPool, String table, Dialect dialect) {
+		Validate.notNull(pool, "Connection pool cannot be null");
+		Validate.notNull(table, "Table name cannot be null");
+		Validate.notNull(dialect, "Dialect cannot be null");
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		this.table = table;
+		this.dialect = dialect;
+		this.achievementsTable = table + "_achievements";
+		if (dialect == Dialect.SQLITE) {
+			this.upsert = "INSERT OR REPLACE INTO " + table + " (uuid, elo, currency, gamesPlayed, achievements) VALUES (?, ?, ?, ?, NULL);";
+			this.unlock = "INSERT OR IGNORE INTO " + achievementsTable + " (uuid, achievement_id, unlocked_at) VALUES (?, ?, ?);";
+		} else {
+			this.upsert = "INSERT INTO " + table + " (uuid, elo, currency, gamesPlayed) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE elo=VALUES(elo), currency=VALUES(currency), gamesPlayed=VALUES(gamesPlayed), achievements=NULL;";
+			this.unlock = "INSERT INTO " + achievementsTable + " (uuid, achievement_id, unlocked_at) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE unlocked_at=unlocked_at;";
+		}
+		this.select = "SELECT elo, currency, gamesPlayed, achievements FROM " + table + " WHERE uuid=?;";
+		this.revoke = "DELETE FROM " + achievementsTable + " WHERE uuid=? AND achievement_id=?;";
+		this.selectAchievements = "SELECT achievement_id FROM " + achievementsTable + " WHERE uuid=? ORDER BY achievement_id;";
+		this.selectLegacy = "SELECT achievements FROM " + table + " WHERE uuid=?;";
 	}
 	
-	private void create() throws SQLException {
-		MinigameSettings set = MinigameManager.getMinigameManager().getMinigameSettings();
-		String sql = "CREATE TABLE IF NOT EXISTS " + set.mysqlTables().get("profiles") + " (uuid VARCHAR(36) NOT NULL, elo BIGINT, currency DECIMAL, gamesPlayed BIGINT, achievements VARCHAR(65536), PRIMARY KEY(UUID));";
-		s.executeUpdate(sql);
+	/**
+	 * Create the profiles and achievements tables if they do not exist yet.
+	 * Achievements still stored in the old achievements column are not moved,
+	 * see {@link #migrateAchievements(ListeningExecutorService)}.
+	 * 
+	 * @throws SQLException If the tables could not be created
+	 */
+	public void createTable() throws SQLException {
+		try (PooledConnection c = pool.getConnection(); Statement s = c.getConnection().createStatement()) {
+			// the achievements column is only read to migrate data saved by older versions
+			s.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " (uuid VARCHAR(36) NOT NULL, elo BIGINT, currency DECIMAL, gamesPlayed BIGINT, achievements VARCHAR(65536), PRIMARY KEY(UUID));");
+			if (dialect == Dialect.SQLITE) {
+				// embedded databases are new, so they can be given an index for leaderboards from the start
+				s.executeUpdate("CREATE INDEX IF NOT EXISTS " + table + "_elo ON " + table + " (elo);");
+				s.executeUpdate("CREATE TABLE IF NOT EXISTS " + achievementsTable + " (uuid VARCHAR(36) NOT NULL, achievement_id INT NOT NULL, unlocked_at BIGINT NOT NULL, PRIMARY KEY(uuid, achievement_id));");
+				s.executeUpdate("CREATE INDEX IF NOT EXISTS " + achievementsTable + "_id ON " + achievementsTable + " (achievement_id);");
+			} else
+				s.executeUpdate("CREATE TABLE IF NOT EXISTS " + achievementsTable + " (uuid VARCHAR(36) NOT NULL, achievement_id INT NOT NULL, unlocked_at BIGINT NOT NULL, PRIMARY KEY(uuid, achievement_id), KEY achievement_id (achievement_id));");
+		}
+	}
+	
+	/**
+	 * Start moving the achievements stored in the old achievements column to
+	 * the achievements table in the background. Until it is done, loading and
+	 * saving profiles waits for it, so they never see half-moved achievements.
+	 * 
+	 * @param executor Runs the migration
+	 * @return A future for the amount of profiles whose achievements were
+	 *         moved
+	 */
+	public ListenableFuture<Integer> migrateAchievements(ListeningExecutorService executor) {
+		return migration = executor.submit(new Callable<Integer>() {
+			
+			@Override
+			public Integer call() throws SQLException {
+				return migrateAchievements();
+			}
+		});
+	}
+	
+	/**
+	 * Wait for the achievements to finish moving to the achievements table, if
+	 * they are being moved in the background. If moving them failed, the old
+	 * column is still read when loading profiles.
+	 * 
+	 * @throws SQLException If the thread was interrupted while waiting
+	 */
+	private void awaitMigration() throws SQLException {
+		ListenableFuture<Integer> m = migration;
+		if (m.isDone())
+			return;
+		try {
+			m.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for achievements to be migrated", e);
+		} catch (ExecutionException e) {
+			// already reported by whoever started the migration
+		}
+	}
+	
+	/**
+	 * Move the achievements stored in the old comma-separated achievements
+	 * column to the achievements table. Profiles are moved a few at a time, and
+	 * each batch is committed on its own, so this can be stopped and started
+	 * again at any point. Profiles that were already moved are skipped.
+	 * 
+	 * @return The amount of profiles whose achievements were moved
+	 * @throws SQLException If the achievements could not be moved
+	 */
+	public int migrateAchievements() throws SQLException {
+		String find = "SELECT uuid, achievements FROM " + table + " WHERE uuid > ? AND achievements IS NOT NULL ORDER BY uuid LIMIT " + MIGRATION_BATCH_SIZE + ";";
+		String clear = "UPDATE " + table + " SET achievements=NULL WHERE uuid=?;";
+		int migrated = 0;
+		String last = "";
+		try (PooledConnection c = pool.getConnection()) {
+			Connection conn = c.getConnection();
+			try {
+				conn.setAutoCommit(false);
+				while (true) {
+					PreparedStatement ps = c.prepare(find);
+					ps.setString(1, last);
+					PreparedStatement insert = c.prepare(unlock);
+					PreparedStatement update = c.prepare(clear);
+					int rows = 0, moved = 0;
+					try (ResultSet rs = ps.executeQuery()) {
+						while (rs.next()) {
+							last = rs.getString("uuid");
+							rows++;
+							String achievements = rs.getString("achievements");
+							int[] ids;
+							try {
+								ids = achievements.isEmpty() ? new int[0] : ProfileData.getAchievementsFromString(achievements);
+							} catch (NumberFormatException e) {
+								MinigameManager.getPlugin().getLogger().warning("Could not move the achievements of " + last + ", they are not valid: " + achievements);
+								continue;
+							}
+							// the unlock times were never stored, so they are unknown
+							for (int id : ids) {
+								insert.setString(1, last);
+								insert.setInt(2, id);
+								insert.setLong(3, 0);
+								insert.addBatch();
+							}
+							update.setString(1, last);
+							update.addBatch();
+							moved++;
+						}
+					}
+					if (rows == 0)
+						break;
+					insert.executeBatch();
+					update.executeBatch();
+					conn.commit();
+					migrated += moved;
+				}
+				conn.setAutoCommit(true);
+				return migrated;
+			} catch (SQLException e) {
+				c.invalidate();
+				try {
+					conn.rollback();
+				} catch (SQLException ex) {
+					e.addSuppressed(ex);
+				}
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Get the kind of database being used
+	 * 
+	 * @return The dialect of SQL used
+	 */
+	public Dialect getDialect() {
+		return dialect;
+	}
+	
+	/**
+	 * Get the connections used to access the database
+	 * 
+	 * @return The connection pool
+	 */
+	public ConnectionPool getPool() {
+		return pool;
+	}
+	
+	/**
+	 * Get the name of the profiles table
+	 * 
+	 * @return The table name
+	 */
+	public String getTable() {
+		return table;
+	}
+	
+	/**
+	 * Get the name of the achievements table, which has a row for every
+	 * achievement each player has
+	 * 
+	 * @return The table name
+	 */
+	public String getAchievementsTable() {
+		return achievementsTable;
+	}
+	
+	/**
+	 * Give a player an achievement right away, instead of waiting for their
+	 * profile to be saved
+	 * 
+	 * @param uuid The player's UUID
+	 * @param achievement The ID of the achievement
+	 * @param time When the achievement was given, in milliseconds since the
+	 *            epoch
+	 * @return Whether the player did not already have the achievement
+	 * @throws SQLException If the achievement could not be saved
+	 */
+	public boolean unlockAchievement(UUID uuid, int achievement, long time) throws SQLException {
+		awaitMigration();
+		try (PooledConnection c = pool.getConnection()) {
+			try {
+				PreparedStatement ps = c.prepare(unlock);
+				ps.setString(1, uuid.toString());
+				ps.setInt(2, achievement);
+				ps.setLong(3, time);
+				return ps.executeUpdate() == 1;
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Count how many players have an achievement
+	 * 
+	 * @param achievement The ID of the achievement
+	 * @return The amount of players with the achievement
+	 * @throws SQLException If the players could not be counted
+	 */
+	public int countPlayersWithAchievement(int achievement) throws SQLException {
+		awaitMigration();
+		try (PooledConnection c = pool.getConnection()) {
+			try {
+				PreparedStatement ps = c.prepare("SELECT COUNT(*) FROM " + achievementsTable + " WHERE achievement_id=?;");
+				ps.setInt(1, achievement);
+				try (ResultSet rs = ps.executeQuery()) {
+					rs.next();
+					return rs.getInt(1);
+				}
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		}
 	}
 	
 	public int saveProfile(PlayerProfile profile) throws SQLException {
-		synchronized (lock) {
-			ProfileData data = profile.getData();
-			String sql = "INSERT INTO " + MinigameManager.getMinigameManager().getMinigameSettings().mysqlTables().get("profiles") + " (uuid, elo, currency, gamesPlayed) VALUES (\"" + profile.getUUID() + "\", " + data.getELO() + ", " + data.getCurrency() + ", " + data.getGamesPlayed() + ") ON DUPLICATE KEY UPDATE elo=" + data.getELO() + ", currency=" + data.getCurrency() + ", gamesPlayed=" + data.getGamesPlayed() + ", achievements='" + data.getAchievementString() + "';";
-			return s.executeUpdate(sql);
+		return saveProfile(profile.getUUID(), profile.getData());
+	}
+	
+	/**
+	 * Save a player's data in a single transaction, so either all of it is
+	 * saved or none of it is
+	 * 
+	 * @param uuid The player's UUID
+	 * @param data The data to save
+	 * @return The update count
+	 * @throws SQLException If the data could not be saved
+	 */
+	public int saveProfile(UUID uuid, ProfileData data) throws SQLException {
+		awaitMigration();
+		try (PooledConnection c = pool.getConnection()) {
+			Connection conn = c.getConnection();
+			try {
+				conn.setAutoCommit(false);
+				// the achievements are compared before the upsert clears the old column
+				boolean achievements = addAchievementBatches(c, uuid, data);
+				PreparedStatement ps = c.prepare(upsert);
+				setUpsertParameters(ps, uuid, data);
+				int count = ps.executeUpdate();
+				if (achievements) {
+					c.prepare(unlock).executeBatch();
+					c.prepare(revoke).executeBatch();
+				}
+				conn.commit();
+				conn.setAutoCommit(true);
+				return count;
+			} catch (SQLException e) {
+				// the connection is thrown away, which discards the transaction with it
+				c.invalidate();
+				try {
+					conn.rollback();
+				} catch (SQLException ex) {
+					e.addSuppressed(ex);
+				}
+				throw e;
+			}
 		}
 	}
 	
-	public PlayerProfile getProfile(UUID uuid) throws SQLException {
-		synchronized (lock) {
-			String sql = "SELECT elo, currency, gamesPlayed, achievements from " + MinigameManager.getMinigameManager().getMinigameSettings().mysqlTables().get("profiles") + " WHERE uuid=\"" + uuid + "\";";
-			ResultSet rs = s.executeQuery(sql);
-			if (rs.next()) {
-				ProfileData data = new ProfileData();
-				data.setELO(rs.getLong("elo"));
-				data.setCurrency(rs.getDouble("currency"));
-				data.setGamesPlayed(rs.getLong("gamesPlayed"));
-				data.setAchievements(ProfileData.getAchievementsFromString(rs.getString("achievements")));
+	/**
+	 * Save several profiles in a single batch and transaction, so either all of
+	 * them are saved or none are
+	 * 
+	 * @param profiles The profiles to save
+	 * @return The update counts of each profile, in iteration order
+	 * @throws SQLException If the profiles could not be saved
+	 */
+	public int[] saveProfiles(Collection<PlayerProfile> profiles) throws SQLException {
+		Map<UUID, ProfileData> data = new LinkedHashMap<>();
+		for (PlayerProfile profile : profiles)
+			data.put(profile.getUUID(), profile.getData());
+		return saveProfiles(data);
+	}
+	
+	/**
+	 * Save the data of several players in a single batch and transaction, so
+	 * either all of them are saved or none are
+	 * 
+	 * @param profiles A map of UUIDs to the data to save
+	 * @return The update counts of each player, in iteration order
+	 * @throws SQLException If the data could not be saved
+	 */
+	public int[] saveProfiles(Map<UUID, ProfileData> profiles) throws SQLException {
+		if (profiles.isEmpty())
+			return new int[0];
+		awaitMigration();
+		try (PooledConnection c = pool.getConnection()) {
+			Connection conn = c.getConnection();
+			try {
+				conn.setAutoCommit(false);
+				PreparedStatement ps = c.prepare(upsert);
+				boolean achievements = false;
+				for (Entry<UUID, ProfileData> e : profiles.entrySet()) {
+					setUpsertParameters(ps, e.getKey(), e.getValue());
+					ps.addBatch();
+					achievements |= addAchievementBatches(c, e.getKey(), e.getValue());
+				}
+				int[] counts = ps.executeBatch();
+				if (achievements) {
+					c.prepare(unlock).executeBatch();
+					c.prepare(revoke).executeBatch();
+				}
+				conn.commit();
+				conn.setAutoCommit(true);
+				return counts;
+			} catch (SQLException e) {
+				// the connection is thrown away, which discards the transaction with it
+				c.invalidate();
 				try {
-					Class<PlayerProfile> clazz = PlayerProfile.class;
-					Constructor<PlayerProfile> cons = clazz.getDeclaredConstructor(UUID.class, ProfileData.class);
-					cons.setAccessible(true);
-					return cons.newInstance(uuid, data);
-				} catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-					e.printStackTrace();
-					return null;
+					conn.rollback();
+				} catch (SQLException ex) {
+					e.addSuppressed(ex);
 				}
-			} else
-				return null;
+				throw e;
+			}
 		}
 	}
 	
-	@Override
-	public void close() throws IOException {
+	private static void setUpsertParameters(PreparedStatement ps, UUID uuid, ProfileData data) throws SQLException {
+		ps.setString(1, uuid.toString());
+		ps.setLong(2, data.getELO());
+		ps.setDouble(3, data.getCurrency());
+		ps.setLong(4, data.getGamesPlayed());
+	}
+	
+	/**
+	 * Add the changes to a player's achievements to the batches of the unlock
+	 * and revoke statements. Usually only the achievements given since the
+	 * data was last saved are inserted, but if the whole list was replaced, it
+	 * is unknown what changed, or the player still has achievements in the old
+	 * column (which saving clears), it is compared with the saved achievements.
+	 * 
+	 * @param c The connection the data is being saved with
+	 * @param uuid The player's UUID
+	 * @param data The data being saved
+	 * @return Whether anything was added to the batches
+	 * @throws SQLException If the saved achievements could not be loaded
+	 */
+	private boolean addAchievementBatches(PooledConnection c, UUID uuid, ProfileData data) throws SQLException {
+		int fields = data.getDirtyFields();
+		// achievements only in the old column were added to the data when it was loaded, and would be lost
+		boolean legacy = hasLegacyAchievements(c, uuid);
+		if (!legacy && fields != 0 && (fields & ProfileData.ACHIEVEMENTS) == 0)
+			return false;
+		PreparedStatement insert = c.prepare(unlock);
+		if (!legacy && fields != 0 && !data.isAchievementListReplaced()) {
+			int[] unlocked = data.getUnlockedAchievements();
+			long[] times = data.getUnlockTimes();
+			for (int i = 0; i < unlocked.length; i++) {
+				insert.setString(1, uuid.toString());
+				insert.setInt(2, unlocked[i]);
+				insert.setLong(3, times[i]);
+				insert.addBatch();
+			}
+			return unlocked.length > 0;
+		}
+		Set<Integer> saved = new HashSet<>();
+		for (int id : loadAchievements(c, uuid))
+			saved.add(id);
+		boolean changed = false;
+		long now = System.currentTimeMillis();
+		for (int id : data.getAchievements()) {
+			if (!saved.remove(id)) {
+				insert.setString(1, uuid.toString());
+				insert.setInt(2, id);
+				insert.setLong(3, now);
+				insert.addBatch();
+				changed = true;
+			}
+		}
+		PreparedStatement delete = c.prepare(revoke);
+		for (int id : saved) {
+			delete.setString(1, uuid.toString());
+			delete.setInt(2, id);
+			delete.addBatch();
+			changed = true;
+		}
+		return changed;
+	}
+	
+	/**
+	 * Load the IDs of the achievements a player has from the achievements
+	 * table
+	 * 
+	 * @param c The connection to load them with
+	 * @param uuid The player's UUID
+	 * @return An array of achievement IDs
+	 * @throws SQLException If the achievements could not be loaded
+	 */
+	private int[] loadAchievements(PooledConnection c, UUID uuid) throws SQLException {
+		PreparedStatement ps = c.prepare(selectAchievements);
+		ps.setString(1, uuid.toString());
+		int[] ids = new int[8];
+		int n = 0;
+		try (ResultSet rs = ps.executeQuery()) {
+			while (rs.next()) {
+				if (n == ids.length)
+					ids = Arrays.copyOf(ids, n * 2);
+				ids[n++] = rs.getInt(1);
+			}
+		}
+		return Arrays.copyOf(ids, n);
+	}
+	
+	public PlayerProfile getProfile(UUID uuid) throws SQLException {
+		ProfileData data = getProfileData(uuid);
+		if (data == null)
+			return null;
 		try {
-			conn.close();
-		} catch (SQLException e) {
-			throw new IOException(e);
+			Class<PlayerProfile> clazz = PlayerProfile.class;
+			Constructor<PlayerProfile> cons = clazz.getDeclaredConstructor(UUID.class, ProfileData.class);
+			cons.setAccessible(true);
+			return cons.newInstance(uuid, data);
+		} catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+			e.printStackTrace();
+			return null;
 		}
 	}
 	
+	/**
+	 * Load a player's data without creating a profile for it, so it can be
+	 * called from any thread
+	 * 
+	 * @param uuid The player's UUID
+	 * @return The player's data, or null if the player is not in the database
+	 * @throws SQLException If the data could not be loaded
+	 */
+	public ProfileData getProfileData(UUID uuid) throws SQLException {
+		awaitMigration();
+		try (PooledConnection c = pool.getConnection()) {
+			try {
+				PreparedStatement ps = c.prepare(select);
+				ps.setString(1, uuid.toString());
+				ProfileData data;
+				String legacy;
+				try (ResultSet rs = ps.executeQuery()) {
+					if (!rs.next())
+						return null;
+					data = new ProfileData();
+					data.setELO(rs.getLong("elo"));
+					data.setCurrency(rs.getDouble("currency"));
+					data.setGamesPlayed(rs.getLong("gamesPlayed"));
+					legacy = rs.getString("achievements");
+				}
+				Set<Integer> achievements = new LinkedHashSet<>();
+				for (int id : loadAchievements(c, uuid))
+					achievements.add(id);
+				data.setAchievements(toAchievementArray(achievements, legacy));
+				return data;
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * List the UUIDs of the next few players in the database, ordered by the
+	 * string form of their UUIDs
+	 * 
+	 * @param after The UUID to continue after, or null to start from the
+	 *            beginning
+	 * @param limit The most UUIDs to list
+	 * @return The UUIDs of the players after <i>after</i>, in order
+	 * @throws SQLException If the players could not be listed
+	 */
+	public List<UUID> scanProfiles(UUID after, int limit) throws SQLException {
+		List<UUID> uuids = new ArrayList<>(limit);
+		try (PooledConnection c = pool.getConnection()) {
+			try {
+				PreparedStatement ps = c.prepare("SELECT uuid FROM " + table + " WHERE uuid > ? ORDER BY uuid LIMIT ?;");
+				ps.setString(1, after == null ? "" : after.toString());
+				ps.setInt(2, limit);
+				try (ResultSet rs = ps.executeQuery()) {
+					while (rs.next())
+						uuids.add(UUID.fromString(rs.getString(1)));
+				}
+				return uuids;
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Load the data of several players at once, with one query for every
+	 * {@value #MAX_BULK_LOAD} players
+	 * 
+	 * @param uuids The UUIDs of the players
+	 * @return A map of UUIDs to data, without the players that are not in the
+	 *         database
+	 * @throws SQLException If the data could not be loaded
+	 */
+	public Map<UUID, ProfileData> getProfileData(Collection<UUID> uuids) throws SQLException {
+		Map<UUID, ProfileData> loaded = new HashMap<>();
+		if (uuids.isEmpty())
+			return loaded;
+		List<UUID> list = new ArrayList<>(new LinkedHashSet<>(uuids));
+		awaitMigration();
+		try (PooledConnection c = pool.getConnection()) {
+			try {
+				for (int from = 0; from < list.size(); from += MAX_BULK_LOAD)
+					loadProfileData(c, list.subList(from, Math.min(list.size(), from + MAX_BULK_LOAD)), loaded);
+				return loaded;
+			} catch (SQLException e) {
+				c.invalidate();
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Load the data and achievements of up to {@value #MAX_BULK_LOAD} players
+	 * with a single query
+	 * 
+	 * @param c The connection to load them with
+	 * @param uuids The UUIDs of the players
+	 * @param loaded The map to put the loaded data into
+	 * @throws SQLException If the data could not be loaded
+	 */
+	private void loadProfileData(PooledConnection c, List<UUID> uuids, Map<UUID, ProfileData> loaded) throws SQLException {
+		// round the amount of parameters up to a power of two, so only a few different statements are prepared
+		int size = 1;
+		while (size < uuids.size())
+			size <<= 1;
+		StringBuilder in = new StringBuilder("?");
+		for (int i = 1; i < size; i++)
+			in.append(", ?");
+		PreparedStatement ps = c.prepare("SELECT p.uuid, p.elo, p.currency, p.gamesPlayed, p.achievements, a.achievement_id FROM " + table + " p LEFT JOIN " + achievementsTable + " a ON a.uuid = p.uuid WHERE p.uuid IN (" + in + ") ORDER BY p.uuid, a.achievement_id;");
+		for (int i = 0; i < size; i++)
+			ps.setString(i + 1, uuids.get(Math.min(i, uuids.size() - 1)).toString());
+		UUID current = null;
+		ProfileData data = null;
+		String legacy = null;
+		Set<Integer> achievements = new LinkedHashSet<>();
+		try (ResultSet rs = ps.executeQuery()) {
+			// each achievement is its own row, so the rows of a player have to be combined
+			while (rs.next()) {
+				UUID uuid = UUID.fromString(rs.getString("uuid"));
+				if (!uuid.equals(current)) {
+					if (data != null)
+						data.setAchievements(toAchievementArray(achievements, legacy));
+					current = uuid;
+					data = new ProfileData();
+					data.setELO(rs.getLong("elo"));
+					data.setCurrency(rs.getDouble("currency"));
+					data.setGamesPlayed(rs.getLong("gamesPlayed"));
+					legacy = rs.getString("achievements");
+					achievements.clear();
+					loaded.put(uuid, data);
+				}
+				int id = rs.getInt("achievement_id");
+				if (!rs.wasNull())
+					achievements.add(id);
+			}
+		}
+		if (data != null)
+			data.setAchievements(toAchievementArray(achievements, legacy));
+	}
+	
+	/**
+	 * Determine whether a player still has achievements in the old
+	 * achievements column, written by an older version
+	 * 
+	 * @param c The connection to use
+	 * @param uuid The player's UUID
+	 * @return Whether the old column holds any achievements
+	 * @throws SQLException If the column could not be read
+	 */
+	private boolean hasLegacyAchievements(PooledConnection c, UUID uuid) throws SQLException {
+		PreparedStatement ps = c.prepare(selectLegacy);
+		ps.setString(1, uuid.toString());
+		try (ResultSet rs = ps.executeQuery()) {
+			if (!rs.next())
+				return false;
+			String legacy = rs.getString(1);
+			return legacy != null && !legacy.isEmpty() && !legacy.equals("null");
+		}
+	}
+	
+	/**
+	 * Combine the achievements from the achievements table with any that are
+	 * still in the old achievements column
+	 * 
+	 * @param achievements The IDs from the achievements table
+	 * @param legacy The value of the old column, or null
+	 * @return An array of achievement IDs
+	 */
+	private static int[] toAchievementArray(Set<Integer> achievements, String legacy) {
+		// rows written by older versions after the migration still use the old column
+		if (legacy != null && !legacy.isEmpty() && !legacy.equals("null")) {
+			for (int id : ProfileData.getAchievementsFromString(legacy))
+				achievements.add(id);
+		}
+		int[] ids = new int[achievements.size()];
+		int i = 0;
+		for (int id : achievements)
+			ids[i++] = id;
+		return ids;
+	}
+	
+	/**
+	 * The kinds of database that profiles can be stored in
+	 * 
+	 * @author DonkeyCore
+	 */
+	public static enum Dialect {
+		/**
+		 * An external MySQL server
+		 */
+		MYSQL,
+		/**
+		 * An embedded SQLite database file
+		 */
+		SQLITE;
+	}
+	
+	/**
+	 * Close the connection if this ProfileDatabase opened it itself. Pools
+	 * passed in are left open for their owner to close.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (ownsPool)
+			pool.close();
+	}
+	
 }
@@ -0,0 +1,163 @@
+package minigamemanager.api.profile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Copies every profile from one {@link ProfileStore} to another, a batch at a
+ * time, so only one batch of profiles is ever held in memory. Profiles are
+ * copied in the order they are {@link ProfileStore#scan(UUID, int) scanned}
+ * in, and the last UUID copied is written to a checkpoint file after every
+ * batch. If the migration is stopped, running it again with the same
+ * checkpoint file carries on from there. Profiles that cannot be loaded are
+ * skipped.<br>
+ * The migration blocks the thread it runs on and stops early if that thread is
+ * interrupted, so it should be run on its own thread.
+ * 
+ * @author DonkeyCore
+ */
+public class ProfileMigration implements Runnable {
+	
+	/**
+	 * The store to copy profiles from
+	 */
+	private final ProfileStore from;
+	/**
+	 * The store to copy profiles to
+	 */
+	private final ProfileStore to;
+	/**
+	 * Remembers how far the migration got
+	 */
+	private final File checkpoint;
+	/**
+	 * The amount of profiles to copy at a time
+	 */
+	private final int batchSize;
+	/**
+	 * Told about the progress of the migration
+	 */
+	private final Listener listener;
+	
+	/**
+	 * Create a new migration
+	 * 
+	 * @param from The store to copy profiles from
+	 * @param to The store to copy profiles to
+	 * @param checkpoint The file that remembers how far the migration got
+	 * @param batchSize The amount of profiles to copy at a time
+	 * @param listener Told about the progress of the migration
+	 */
+	public ProfileMigration(ProfileStore from, ProfileStore to, File checkpoint, int batchSize, Listener listener) {
+		Validate.notNull(from, "Store to migrate from cannot be null");
+		Validate.notNull(to, "Store to migrate to cannot be null");
+		Validate.notNull(checkpoint, "Checkpoint file cannot be null");
+		Validate.isTrue(batchSize > 0, "Batch size must be positive");
+		Validate.notNull(listener, "Listener cannot be null");
+		this.from = from;
+		this.to = to;
+		this.checkpoint = checkpoint;
+		this.batchSize = batchSize;
+		this.listener = listener;
+	}
+	
+	/**
+	 * Copy the profiles, starting after the last one copied if there is a
+	 * checkpoint. The checkpoint is deleted once every profile is copied.
+	 */
+	@Override
+	public void run() {
+		YamlConfiguration state = YamlConfiguration.loadConfiguration(checkpoint);
+		String s = state.getString("last");
+		UUID last = s == null ? null : UUID.fromString(s);
+		long migrated = state.getLong("migrated");
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Map<UUID, ProfileData> page = from.scan(last, batchSize).get();
+				if (page.isEmpty()) {
+					if (!checkpoint.delete() && checkpoint.exists())
+						throw new IOException("Could not delete " + checkpoint.getName());
+					listener.onFinish(migrated, false);
+					return;
+				}
+				// profiles that could not be loaded are skipped, but the next page still starts after them
+				Map<UUID, ProfileData> batch = new LinkedHashMap<>();
+				for (Entry<UUID, ProfileData> e : page.entrySet()) {
+					last = e.getKey();
+					if (e.getValue() != null)
+						batch.put(e.getKey(), e.getValue());
+					else
+						listener.onSkip(e.getKey());
+				}
+				if (!batch.isEmpty())
+					to.saveAll(batch).get();
+				migrated += batch.size();
+				state.set("last", last.toString());
+				state.set("migrated", migrated);
+				state.save(checkpoint);
+				listener.onProgress(migrated, last);
+			}
+			listener.onFinish(migrated, true);
+		} catch (InterruptedException e) {
+			listener.onFinish(migrated, true);
+		} catch (ExecutionException e) {
+			listener.onError(e.getCause(), migrated);
+		} catch (IOException | RuntimeException e) {
+			listener.onError(e, migrated);
+		}
+	}
+	
+	/**
+	 * Told about the progress of a {@link ProfileMigration}. The methods are
+	 * called on the thread the migration runs on.
+	 * 
+	 * @author DonkeyCore
+	 */
+	public static interface Listener {
+		
+		/**
+		 * Called after each batch of profiles is copied
+		 * 
+		 * @param migrated The amount of profiles copied so far, including
+		 *            those copied before the migration was resumed
+		 * @param last The UUID of the last profile copied
+		 */
+		public void onProgress(long migrated, UUID last);
+		
+		/**
+		 * Called when a profile is listed by the store being copied from but
+		 * could not be loaded, so it is not copied
+		 * 
+		 * @param uuid The UUID of the profile
+		 */
+		public void onSkip(UUID uuid);
+		
+		/**
+		 * Called when the migration stops without an error
+		 * 
+		 * @param migrated The amount of profiles copied
+		 * @param cancelled Whether the migration was stopped before every
+		 *            profile was copied
+		 */
+		public void onFinish(long migrated, boolean cancelled);
+		
+		/**
+		 * Called when the migration stops because of an error. The profiles
+		 * in the batch that failed are copied again when it is resumed.
+		 * 
+		 * @param error The error
+		 * @param migrated The amount of profiles copied before the error
+		 */
+		public void onError(Throwable error, long migrated);
+		
+	}
+	
+}
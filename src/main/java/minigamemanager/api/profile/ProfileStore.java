@@ -0,0 +1,74 @@
+package minigamemanager.api.profile;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Somewhere player profiles are kept, such as config files or a database.
+ * Every method runs in the background and returns a future right away, so
+ * none of them ever block the main thread.
+ * 
+ * @author DonkeyCore
+ */
+public interface ProfileStore {
+	
+	/**
+	 * Load a player's data
+	 * 
+	 * @param uuid The player's UUID
+	 * @return A future for the player's data, or for null if the player has
+	 *         never been saved
+	 */
+	public ListenableFuture<ProfileData> load(UUID uuid);
+	
+	/**
+	 * Load the data of several players
+	 * 
+	 * @param uuids The UUIDs of the players
+	 * @return A future for a map of UUIDs to data, without the players that
+	 *         have never been saved
+	 */
+	public ListenableFuture<Map<UUID, ProfileData>> loadAll(Collection<UUID> uuids);
+	
+	/**
+	 * Load the next few profiles in the store, ordered by the string form of
+	 * their UUIDs. Passing the last UUID of one page as <i>after</i> loads the
+	 * next page, so every profile can be visited without loading all of them
+	 * at once.
+	 * 
+	 * @param after The UUID to continue after, or null to start from the
+	 *            beginning
+	 * @param limit The most profiles to load
+	 * @return A future for an ordered map of UUIDs to data, which is empty
+	 *         once there are no more profiles. Profiles that were listed but
+	 *         could not be loaded map to null, so the next page can still
+	 *         start after them.
+	 * @throws UnsupportedOperationException If the store cannot list its
+	 *             profiles
+	 */
+	public ListenableFuture<Map<UUID, ProfileData>> scan(UUID after, int limit);
+	
+	/**
+	 * Save a player's data. The data must not be changed afterwards, so pass
+	 * a {@link ProfileData#snapshot() snapshot} of data that is still in use.
+	 * 
+	 * @param uuid The player's UUID
+	 * @param data The data to save
+	 * @return A future that completes once the data is saved
+	 */
+	public ListenableFuture<Void> save(UUID uuid, ProfileData data);
+	
+	/**
+	 * Save the data of several players at once. The data must not be changed
+	 * afterwards, so pass {@link ProfileData#snapshot() snapshots} of data
+	 * that is still in use.
+	 * 
+	 * @param profiles A map of UUIDs to the data to save
+	 * @return A future that completes once all of the data is saved
+	 */
+	public ListenableFuture<Void> saveAll(Map<UUID, ProfileData> profiles);
+	
+}
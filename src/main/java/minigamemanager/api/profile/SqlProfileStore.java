@@ -0,0 +1,70 @@
+package minigamemanager.api.profile;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Keeps profiles in a MySQL or SQLite database, see {@link ProfileDatabase}
+ * 
+ * @author DonkeyCore
+ */
+public class SqlProfileStore extends AbstractProfileStore {
+	
+	/**
+	 * The profile database
+	 */
+	private final ProfileDatabase database;
+	
+	/**
+	 * Create a new SqlProfileStore
+	 * 
+	 * @param database The profile database
+	 * @param executor Runs the queries
+	 */
+	public SqlProfileStore(ProfileDatabase database, ListeningExecutorService executor) {
+		this(database, executor, executor);
+	}
+	
+	/**
+	 * Create a new SqlProfileStore that saves profiles on their own executor
+	 * 
+	 * @param database The profile database
+	 * @param executor Runs the queries that load profiles
+	 * @param writer Runs the queries that save profiles
+	 */
+	public SqlProfileStore(ProfileDatabase database, ListeningExecutorService executor, ListeningExecutorService writer) {
+		super(executor, writer);
+		this.database = database;
+	}
+	
+	@Override
+	protected ProfileData loadProfile(UUID uuid) throws SQLException {
+		return database.getProfileData(uuid);
+	}
+	
+	@Override
+	protected Map<UUID, ProfileData> loadProfiles(Collection<UUID> uuids) throws SQLException {
+		return database.getProfileData(uuids);
+	}
+	
+	@Override
+	protected List<UUID> scanProfiles(UUID after, int limit) throws SQLException {
+		return database.scanProfiles(after, limit);
+	}
+	
+	@Override
+	protected void saveProfile(UUID uuid, ProfileData data) throws SQLException {
+		database.saveProfile(uuid, data);
+	}
+	
+	@Override
+	protected void saveProfiles(Map<UUID, ProfileData> profiles) throws SQLException {
+		database.saveProfiles(profiles);
+	}
+	
+}
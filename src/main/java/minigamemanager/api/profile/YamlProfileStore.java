@@ -0,0 +1,61 @@
+package minigamemanager.api.profile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import minigamemanager.config.PlayerProfileConfiguration;
+
+/**
+ * Keeps profiles in their own config files, see
+ * {@link PlayerProfileConfiguration}
+ * 
+ * @author DonkeyCore
+ */
+public class YamlProfileStore extends AbstractProfileStore {
+	
+	/**
+	 * The profile files
+	 */
+	private final PlayerProfileConfiguration config;
+	
+	/**
+	 * Create a new YamlProfileStore
+	 * 
+	 * @param config The profile files
+	 * @param executor Runs the file operations
+	 */
+	public YamlProfileStore(PlayerProfileConfiguration config, ListeningExecutorService executor) {
+		this(config, executor, executor);
+	}
+	
+	/**
+	 * Create a new YamlProfileStore that saves profiles on their own executor
+	 * 
+	 * @param config The profile files
+	 * @param executor Runs the file operations that load profiles
+	 * @param writer Runs the file operations that save profiles
+	 */
+	public YamlProfileStore(PlayerProfileConfiguration config, ListeningExecutorService executor, ListeningExecutorService writer) {
+		super(executor, writer);
+		this.config = config;
+	}
+	
+	@Override
+	protected ProfileData loadProfile(UUID uuid) {
+		return config.getProfileData(uuid);
+	}
+	
+	@Override
+	protected List<UUID> scanProfiles(UUID after, int limit) {
+		return config.scanProfiles(after, limit);
+	}
+	
+	@Override
+	protected void saveProfile(UUID uuid, ProfileData data) throws IOException {
+		config.saveProfile(uuid, data);
+	}
+	
+}
@@ -1,6 +1,5 @@
 package minigamemanager.commands;
 
-import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -10,7 +9,6 @@ import minigamemanager.api.rotation.RotationManager;
 import minigamemanager.config.MessageType;
 import minigamemanager.config.MinigameMessages;
 import minigamemanager.core.MinigameManager;
-import minigamemanager.events.rotation.RotationJoinEvent;
 
 /**
  * "/join" command - Joins a rotation
@@ -64,14 +62,10 @@ public class CommandJoin implements CommandExecutor {
 			}
 			RotationManager rm = manager.getRotationManager();
 			if (rotation == Integer.MIN_VALUE) {
-				if (rm.join(player))
-					Bukkit.getPluginManager().callEvent(new RotationJoinEvent(rm.getRotation(player), player));
-				else
+				if (!rm.join(player))
 					player.sendMessage(messages.getMessage(MessageType.FULL_ROTATIONS));
 			} else {
-				if (rm.join(player, rotation - 1))
-					Bukkit.getPluginManager().callEvent(new RotationJoinEvent(rm.getRotation(player), player));
-				else
+				if (!rm.join(player, rotation - 1))
 					player.sendMessage(messages.getMessage(MessageType.FULL_ROTATION));
 			}
 			return true;
@@ -1,16 +1,13 @@
 package minigamemanager.commands;
 
-import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
-import minigamemanager.api.rotation.Rotation;
 import minigamemanager.config.MessageType;
 import minigamemanager.config.MinigameMessages;
 import minigamemanager.core.MinigameManager;
-import minigamemanager.events.rotation.RotationLeaveEvent;
 
 /**
  * "/leave" command - Leaves a rotation
@@ -42,10 +39,7 @@ public class CommandLeave implements CommandExecutor {
 				return false;
 			}
 			Player player = (Player) sender;
-			Rotation rotation = manager.getRotationManager().getRotation(player);
-			if (manager.getRotationManager().leave(player, false))
-				Bukkit.getPluginManager().callEvent(new RotationLeaveEvent(rotation, player));
-			else
+			if (!manager.getRotationManager().leave(player, false))
 				player.sendMessage(manager.getMessages().getMessage(MessageType.NOT_IN_ROTATION));
 		}
 		return true;
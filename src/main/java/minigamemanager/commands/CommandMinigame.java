@@ -1,5 +1,6 @@
 package minigamemanager.commands;
 
+import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
@@ -12,12 +13,16 @@ import org.bukkit.command.CommandSender;
 import minigamemanager.api.minigame.Minigame;
 import minigamemanager.api.minigame.MinigameAttributes;
 import minigamemanager.api.minigame.MinigameErrors;
+import minigamemanager.api.minigame.MinigameShell;
 import minigamemanager.api.rotation.Rotation;
 import minigamemanager.api.rotation.RotationManager;
 import minigamemanager.api.rotation.RotationState;
 import minigamemanager.config.MessageType;
 import minigamemanager.config.MinigameMessages;
+import minigamemanager.core.EventTimings;
+import minigamemanager.core.EventTimings.Timing;
 import minigamemanager.core.MinigameManager;
+import minigamemanager.core.MinigameManager.ListenerEntry;
 
 /**
  * "/minigamemanager" command - Handles administrator manipulation
@@ -53,12 +58,16 @@ public class CommandMinigame implements CommandExecutor {
 					sender.sendMessage(ChatColor.YELLOW + "> " + ChatColor.GOLD + "/mm start <rotation> " + ChatColor.YELLOW + "- Start the rotation cycle; <rotation>: Rotation ID");
 					sender.sendMessage(ChatColor.YELLOW + "> " + ChatColor.GOLD + "/mm stop <rotation> " + ChatColor.YELLOW + "- Stop the rotation cycle; <rotation>: Rotation ID");
 					sender.sendMessage(ChatColor.YELLOW + "> " + ChatColor.GOLD + "/mm status <rotation> " + ChatColor.YELLOW + "- View the status of rotation; <rotation>: Rotation ID");
+					sender.sendMessage(ChatColor.YELLOW + "> " + ChatColor.GOLD + "/mm timings [reset] " + ChatColor.YELLOW + "- View or reset how long minigames spend handling events");
+					sender.sendMessage(ChatColor.YELLOW + "> " + ChatColor.GOLD + "/mm migrate <from> <to> " + ChatColor.YELLOW + "- Copy every profile between backends (yaml, mysql, sqlite)");
+					sender.sendMessage(ChatColor.YELLOW + "> " + ChatColor.GOLD + "/mm migrate cancel " + ChatColor.YELLOW + "- Stop the running profile migration; run it again to resume");
 					sender.sendMessage(ChatColor.YELLOW + "> " + ChatColor.GOLD + "===<" + ChatColor.GOLD + "MinigameManager Help" + ChatColor.YELLOW + ">===");
 				} else if (args[0].equalsIgnoreCase("reload") && sender.hasPermission("minigamemanager.admin.reload")) {
 					MinigameManager.getPlugin().reloadConfig();
 					manager.getMinigameSettings().reloadConfig();
 					manager.getMessages().reloadConfig();
 					manager.getPlayerProfileConfig().reloadConfig();
+					manager.getEventTimings().setSampleRate(manager.getMinigameSettings().eventTimingsSampleRate());
 					MinigameManager.getPlugin().loadDefaultMinigames();
 					sender.sendMessage(messages.getMessage(MessageType.CONFIG_RELOADED));
 				} else if (args[0].equalsIgnoreCase("list") && sender.hasPermission("minigamemanager.admin.list")) {
@@ -74,9 +83,23 @@ public class CommandMinigame implements CommandExecutor {
 						sender.sendMessage(enabled.replace("%minigames%", minigames.substring(4)));
 					else
 						sender.sendMessage(enabled.replace("%minigames%", ChatColor.RED + "(none)"));
+				} else if (args[0].equalsIgnoreCase("timings") && sender.hasPermission("minigamemanager.admin.timings")) {
+					sendTimings(sender);
 				} else
 					return false;
 			} else if (args.length == 2) {
+				if (args[0].equalsIgnoreCase("timings") && args[1].equalsIgnoreCase("reset") && sender.hasPermission("minigamemanager.admin.timings")) {
+					manager.getEventTimings().reset();
+					sender.sendMessage(ChatColor.YELLOW + "Event timings have been reset.");
+					return true;
+				}
+				if (args[0].equalsIgnoreCase("migrate") && args[1].equalsIgnoreCase("cancel") && sender.hasPermission("minigamemanager.admin.migrate")) {
+					if (MinigameManager.getPlugin().cancelMigration())
+						sender.sendMessage(ChatColor.YELLOW + "The profile migration will stop after the current batch.");
+					else
+						sender.sendMessage(ChatColor.YELLOW + "No profile migration is running.");
+					return true;
+				}
 				int id = -1;
 				try {
 					id = Integer.parseInt(args[1]);
@@ -176,6 +199,19 @@ public class CommandMinigame implements CommandExecutor {
 				} else
 					return false;
 			} else if (args.length == 3) {
+				if (args[0].equalsIgnoreCase("migrate") && sender.hasPermission("minigamemanager.admin.migrate")) {
+					try {
+						if (MinigameManager.getPlugin().migrateProfiles(args[1], args[2], sender))
+							sender.sendMessage(ChatColor.YELLOW + "Migrating profiles from " + ChatColor.GOLD + args[1] + ChatColor.YELLOW + " to " + ChatColor.GOLD + args[2] + ChatColor.YELLOW + "...");
+						else
+							sender.sendMessage(ChatColor.YELLOW + "A profile migration is already running! Use " + ChatColor.GOLD + "/mm migrate cancel" + ChatColor.YELLOW + " to stop it.");
+					} catch (IllegalArgumentException e) {
+						sender.sendMessage(ChatColor.RED + e.getMessage() + ". Backends: yaml, mysql, sqlite");
+					} catch (IllegalStateException e) {
+						sender.sendMessage(ChatColor.RED + e.getMessage() + ". Switch backends in the config and restart first.");
+					}
+					return true;
+				}
 				int id = -1;
 				try {
 					id = Integer.parseInt(args[1]);
@@ -212,4 +248,43 @@ public class CommandMinigame implements CommandExecutor {
 			return false;
 	}
 	
+	/**
+	 * Show the collected event timings
+	 * 
+	 * @param sender Who to send the timings to
+	 */
+	private void sendTimings(CommandSender sender) {
+		EventTimings timings = manager.getEventTimings();
+		sender.sendMessage(ChatColor.YELLOW + "===<" + ChatColor.GOLD + "Event Timings" + ChatColor.YELLOW + ">===");
+		if (!timings.isEnabled()) {
+			sender.sendMessage(ChatColor.RED + "Timings are disabled! Set events.timings-sample-rate in the config to enable them.");
+			return;
+		}
+		sender.sendMessage(ChatColor.YELLOW + "Timing 1 in " + ChatColor.GOLD + timings.getSampleRate() + ChatColor.YELLOW + " events over the last " + ChatColor.GOLD + (timings.getElapsedMillis() / 1000) + "s");
+		sender.sendMessage(ChatColor.YELLOW + "Minigames:");
+		for (Entry<Class<? extends MinigameShell>, Timing> e : timings.getMinigameTimings().entrySet()) {
+			MinigameAttributes attr = e.getKey().getAnnotation(MinigameAttributes.class);
+			sendTiming(sender, attr == null ? e.getKey().getSimpleName() : attr.name().replace('_', ' '), e.getValue());
+		}
+		sender.sendMessage(ChatColor.YELLOW + "Rotations:");
+		for (Entry<Integer, Timing> e : timings.getRotationTimings().entrySet())
+			sendTiming(sender, "Rotation " + (e.getKey() + 1), e.getValue());
+		sender.sendMessage(ChatColor.YELLOW + "Slowest listeners:");
+		for (ListenerEntry e : timings.getSlowestListeners(5)) {
+			if (e.getTiming().getCalls() > 0)
+				sendTiming(sender, e.minigame.getClass().getSimpleName() + " " + e.event.getSimpleName(), e.getTiming());
+		}
+	}
+	
+	/**
+	 * Show a single line of event timings
+	 * 
+	 * @param sender Who to send the timings to
+	 * @param name What the timings are for
+	 * @param timing The timings to show
+	 */
+	private void sendTiming(CommandSender sender, String name, Timing timing) {
+		sender.sendMessage(ChatColor.YELLOW + "> " + ChatColor.GOLD + name + ChatColor.YELLOW + " - calls: " + ChatColor.GOLD + timing.getCalls() + ChatColor.YELLOW + ", total: " + ChatColor.GOLD + String.format("%.2fms", timing.getEstimatedNanos() / 1e6) + ChatColor.YELLOW + ", avg: " + ChatColor.GOLD + String.format("%.3fms", timing.getAverageNanos() / 1e6) + ChatColor.YELLOW + ", max: " + ChatColor.GOLD + String.format("%.3fms", timing.getMaxNanos() / 1e6));
+	}
+	
 }
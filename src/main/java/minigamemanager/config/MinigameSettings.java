@@ -263,6 +263,92 @@ public class MinigameSettings {
 		return getConfig().getConfigurationSection("profiles").getBoolean("vault") && MinigameManager.getMinigameManager().useVaultEconomy();
 	}
 	
+	/**
+	 * Get the most player profiles to keep loaded at once. Online players'
+	 * profiles are always kept loaded.
+	 * 
+	 * @return The maximum amount of loaded profiles
+	 */
+	public int profileCacheSize() {
+		return getConfig().getConfigurationSection("profiles").getConfigurationSection("cache").getInt("max-size");
+	}
+	
+	/**
+	 * Get how long an offline player's profile is kept loaded after it was
+	 * last used
+	 * 
+	 * @return The idle time in minutes
+	 */
+	public int profileCacheIdleMinutes() {
+		return getConfig().getConfigurationSection("profiles").getConfigurationSection("cache").getInt("idle-minutes");
+	}
+	
+	/**
+	 * Determine whether profiles are also saved to config files when a
+	 * database is used
+	 * 
+	 * @return Whether config files keep a copy of every profile
+	 */
+	public boolean profileFileBackup() {
+		return getConfig().getConfigurationSection("profiles").getBoolean("file-backup", true);
+	}
+	
+	/**
+	 * Determine whether offline players' stats are kept in the offline profile
+	 * cache
+	 * 
+	 * @return Whether the offline cache is enabled
+	 */
+	public boolean offlineCacheEnabled() {
+		return getConfig().getConfigurationSection("profiles").getConfigurationSection("offline-cache").getBoolean("enabled");
+	}
+	
+	/**
+	 * Get the name of the offline profile cache file, in the plugin folder
+	 * 
+	 * @return The cache file name
+	 */
+	public String offlineCacheFile() {
+		return getConfig().getConfigurationSection("profiles").getConfigurationSection("offline-cache").getString("file");
+	}
+	
+	/**
+	 * Get how many players fit in the offline profile cache
+	 * 
+	 * @return The capacity of the cache
+	 */
+	public int offlineCacheCapacity() {
+		return getConfig().getConfigurationSection("profiles").getConfigurationSection("offline-cache").getInt("capacity");
+	}
+	
+	/**
+	 * Get how often profiles that changed are saved
+	 * 
+	 * @return The interval in seconds
+	 */
+	public int profileFlushInterval() {
+		return Math.max(1, getConfig().getConfigurationSection("profiles").getInt("flush-interval"));
+	}
+	
+	/**
+	 * Get how long to wait for profiles to finish saving when the plugin is
+	 * disabled
+	 * 
+	 * @return The timeout in seconds
+	 */
+	public int profileShutdownTimeout() {
+		return getConfig().getConfigurationSection("profiles").getInt("shutdown-timeout");
+	}
+	
+	/**
+	 * Get how many profiles '/mm migrate' copies at a time
+	 * 
+	 * @return The amount of profiles in each batch
+	 */
+	public int profileMigrationBatchSize() {
+		return Math.max(1, getConfig().getConfigurationSection("profiles").getInt("migration-batch-size", 500));
+	}
+	
 	// Configuration Section: MySQL
 	
 	/**
@@ -322,6 +408,43 @@ public class MinigameSettings {
 		return pass;
 	}
 	
+	/**
+	 * Get how long to wait for a profile that is needed right away before
+	 * warning that loading it is slow
+	 * 
+	 * @return The timeout in milliseconds
+	 */
+	public long mysqlLoadTimeout() {
+		return getConfig().getConfigurationSection("mysql").getLong("load-timeout");
+	}
+	
+	/**
+	 * Get the most connections to keep open to the database
+	 * 
+	 * @return The connection pool size
+	 */
+	public int mysqlPoolSize() {
+		return Math.max(1, getConfig().getConfigurationSection("mysql").getInt("pool.size"));
+	}
+	
+	/**
+	 * Get how long to wait when checking that a pooled connection still works
+	 * 
+	 * @return The timeout in seconds, or 0 if connections are not checked
+	 */
+	public int mysqlPoolValidationTimeout() {
+		return Math.max(0, getConfig().getConfigurationSection("mysql").getInt("pool.validation-timeout"));
+	}
+	
+	/**
+	 * Get how long to wait for a connection when all of them are in use
+	 * 
+	 * @return The timeout in milliseconds
+	 */
+	public long mysqlPoolWaitTimeout() {
+		return getConfig().getConfigurationSection("mysql").getLong("pool.wait-timeout");
+	}
+	
 	/**
 	 * Get a map of strings to objects of table names
 	 * 
@@ -331,4 +454,46 @@ public class MinigameSettings {
 		return getConfig().getConfigurationSection("mysql").getConfigurationSection("tables").getValues(false);
 	}
 	
+	// Configuration section: SQLite
+	
+	/**
+	 * Get whether the embedded SQLite database is enabled for this server
+	 * 
+	 * @return Whether SQLite is enabled
+	 */
+	public boolean sqliteEnabled() {
+		return getConfig().getConfigurationSection("sqlite").getBoolean("enabled");
+	}
+	
+	/**
+	 * Get the name of the SQLite database file, in the plugin folder
+	 * 
+	 * @return The database file name
+	 */
+	public String sqliteFile() {
+		return getConfig().getConfigurationSection("sqlite").getString("file");
+	}
+	
+	// Configuration section: Events
+	
+	/**
+	 * Determine whether minigame events should be registered directly with
+	 * Bukkit instead of injecting a custom plugin manager. Off unless set to
+	 * "native".
+	 * 
+	 * @return Whether native event dispatch is enabled
+	 */
+	public boolean nativeEventDispatch() {
+		return "native".equalsIgnoreCase(getConfig().getConfigurationSection("events").getString("dispatch"));
+	}
+	
+	/**
+	 * Get how many minigame events pass for each one that is timed
+	 * 
+	 * @return The timings sample rate, or 0 if timings are disabled
+	 */
+	public int eventTimingsSampleRate() {
+		return getConfig().getConfigurationSection("events").getInt("timings-sample-rate");
+	}
+	
 }
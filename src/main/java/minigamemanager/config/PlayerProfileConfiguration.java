@@ -1,6 +1,21 @@
 package minigamemanager.config;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.logging.Level;
+
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 
 import minigamemanager.api.config.CustomConfig;
 import minigamemanager.api.profile.PlayerProfile;
@@ -8,17 +23,68 @@ import minigamemanager.api.profile.ProfileData;
 import minigamemanager.core.MinigameManager;
 
 /**
- * Class for profiles of players
+ * Class for profiles of players. Each profile is kept in its own file in the
+ * profiles folder, sharded into subfolders by the first two characters of the
+ * UUID, so loading or saving a profile never touches any other profile.
+ * Profiles from the old profiles.yml are still read if they have no file of
+ * their own yet, and are moved to their own file the next time they are
+ * saved.
  * 
  * @author DonkeyCore
  */
 public class PlayerProfileConfiguration extends CustomConfig {
 	
 	/**
-	 * Create a new instance of MinigameLocations
+	 * The folder containing every profile file
+	 */
+	private final File directory;
+	/**
+	 * Locks for saving profiles, picked by UUID
+	 */
+	private final Object[] locks = new Object[16];
+	/**
+	 * The config that {@link #legacyKeys} were read from
+	 */
+	private FileConfiguration legacyConfig = null;
+	/**
+	 * The sorted UUIDs of the profiles in the old profiles.yml
+	 */
+	private String[] legacyKeys = null;
+	
+	/**
+	 * Create a new instance of PlayerProfileConfiguration
 	 */
 	public PlayerProfileConfiguration() {
-		super(MinigameManager.getPlugin(), MinigameManager.getPlugin().getDataFolder(), "profiles.yml");
+		super(MinigameManager.getPlugin(), new YamlConfiguration(), MinigameManager.getPlugin().getDataFolder(), "profiles.yml");
+		this.directory = new File(MinigameManager.getPlugin().getDataFolder(), "profiles");
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new Object();
+		// only bother reading the old file if there is one
+		if (new File(MinigameManager.getPlugin().getDataFolder(), "profiles.yml").exists())
+			reloadConfig();
+	}
+	
+	/**
+	 * Get the file that a profile is saved to
+	 * 
+	 * @param profile The profile
+	 * 
+	 * @return The profile's file, which may not exist yet
+	 */
+	public File getProfileFile(PlayerProfile profile) {
+		return getProfileFile(profile.getUUID());
+	}
+	
+	/**
+	 * Get the file that a player's profile is saved to
+	 * 
+	 * @param uuid The player's UUID
+	 * 
+	 * @return The profile's file, which may not exist yet
+	 */
+	public File getProfileFile(UUID uuid) {
+		String id = uuid.toString();
+		return new File(new File(directory, id.substring(0, 2)), id + ".yml");
 	}
 	
 	/**
@@ -29,42 +95,194 @@ public class PlayerProfileConfiguration extends CustomConfig {
 	 * @return An instance of ProfileData
 	 */
 	public ProfileData getProfileData(PlayerProfile profile) {
+		ProfileData data = getProfileData(profile.getUUID());
+		if (data == null) {
+			data = new ProfileData();
+			data.setELO(MinigameManager.getMinigameManager().getMinigameSettings().defaultELO());
+		}
+		return data;
+	}
+	
+	/**
+	 * Load a player's data from config. Safe to call from any thread.
+	 * 
+	 * @param uuid The player's UUID
+	 * 
+	 * @return The player's data, or null if the player has never been saved
+	 */
+	public ProfileData getProfileData(UUID uuid) {
+		File file = getProfileFile(uuid);
+		ConfigurationSection cs = file.exists() ? YamlConfiguration.loadConfiguration(file) : getConfig().getConfigurationSection(uuid.toString());
+		if (cs == null)
+			return null;
 		ProfileData data = new ProfileData();
-		ConfigurationSection cs = getConfig().getConfigurationSection(profile.getUUID().toString());
 		MinigameSettings settings = MinigameManager.getMinigameManager().getMinigameSettings();
-		if (cs == null) {
-			data.setELO(settings.defaultELO());
-			return data;
-		}
 		if (settings.eloEnabled())
 			data.setELO(cs.getLong("elo"));
 		if (!settings.vaultEnabled())
 			data.setCurrency(cs.getDouble("currency"));
 		data.setGamesPlayed(cs.getLong("gamesPlayed"));
-		data.setAchievements(ProfileData.getAchievementsFromString(cs.getString("achievements")));
+		data.setAchievements(ProfileData.getAchievementsFromString(cs.getString("achievements", "null")));
 		return data;
 	}
 	
 	/**
-	 * Save a profile to the config
+	 * List the UUIDs of the next few saved profiles, ordered by the string
+	 * form of their UUIDs. Only the folders that can contain those profiles
+	 * are listed, so walking through every profile a page at a time never
+	 * holds much more than a page in memory. Safe to call from any thread.
+	 * 
+	 * @param after The UUID to continue after, or null to start from the
+	 *            beginning
+	 * @param limit The most UUIDs to list
+	 * 
+	 * @return The UUIDs of the profiles after <i>after</i>, in order
+	 */
+	public List<UUID> scanProfiles(UUID after, int limit) {
+		String start = after == null ? "" : after.toString();
+		TreeSet<String> found = new TreeSet<>();
+		String[] shards = directory.list();
+		if (shards != null) {
+			Arrays.sort(shards);
+			int fromFiles = 0;
+			for (String shard : shards) {
+				// every profile in a folder comes after the ones in earlier folders
+				if (fromFiles >= limit)
+					break;
+				if (shard.compareTo(start.substring(0, Math.min(2, start.length()))) < 0)
+					continue;
+				String[] files = new File(directory, shard).list();
+				if (files == null)
+					continue;
+				for (String file : files) {
+					if (!file.endsWith(".yml"))
+						continue;
+					String id = file.substring(0, file.length() - 4);
+					if (id.compareTo(start) > 0 && isUUID(id)) {
+						found.add(id);
+						fromFiles++;
+					}
+				}
+			}
+		}
+		// profiles that have not been moved out of profiles.yml yet
+		String[] legacy = getLegacyKeys();
+		int from = Arrays.binarySearch(legacy, start);
+		from = from < 0 ? -from - 1 : from + 1;
+		for (int i = from; i < legacy.length && i < from + limit; i++)
+			found.add(legacy[i]);
+		List<UUID> uuids = new ArrayList<>(Math.min(limit, found.size()));
+		for (String id : found) {
+			if (uuids.size() == limit)
+				break;
+			uuids.add(UUID.fromString(id));
+		}
+		return uuids;
+	}
+	
+	/**
+	 * Get the UUIDs of the profiles in the old profiles.yml. They are only
+	 * read again when the file is reloaded, so scanning through every profile
+	 * does not go through all of them on every page.
+	 * 
+	 * @return The sorted UUIDs
+	 */
+	private synchronized String[] getLegacyKeys() {
+		FileConfiguration config = getConfig();
+		if (legacyKeys == null || legacyConfig != config) {
+			List<String> keys = new ArrayList<>();
+			for (String id : config.getKeys(false)) {
+				if (isUUID(id))
+					keys.add(id);
+			}
+			legacyKeys = keys.toArray(new String[keys.size()]);
+			Arrays.sort(legacyKeys);
+			legacyConfig = config;
+		}
+		return legacyKeys;
+	}
+	
+	/**
+	 * Determine whether a file or key name is a UUID
+	 * 
+	 * @param id The name
+	 * 
+	 * @return Whether the name is the string form of a UUID
+	 */
+	private static boolean isUUID(String id) {
+		try {
+			return UUID.fromString(id).toString().equals(id);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Save a profile to its file
 	 * 
 	 * @param profile The profile to save
 	 */
 	public void saveProfile(PlayerProfile profile) {
-		ProfileData data = profile.getData();
-		ConfigurationSection cs = getConfig().getConfigurationSection(profile.getUUID().toString());
-		if (cs == null) {
-			getConfig().createSection(profile.getUUID().toString());
-			cs = getConfig().getConfigurationSection(profile.getUUID().toString());
+		try {
+			saveProfile(profile.getUUID(), profile.getData());
+		} catch (IOException e) {
+			getPlugin().getLogger().log(Level.SEVERE, "Could not save profile to " + getProfileFile(profile), e);
 		}
+	}
+	
+	/**
+	 * Save a player's data to its file. The file is written to a temporary
+	 * file first and then moved into place, so a crash never leaves it half
+	 * written. Safe to call from any thread.
+	 * 
+	 * @param uuid The player's UUID
+	 * @param data The data to save
+	 * @throws IOException If the file could not be written
+	 */
+	public void saveProfile(UUID uuid, ProfileData data) throws IOException {
+		File file = getProfileFile(uuid);
 		MinigameSettings settings = MinigameManager.getMinigameManager().getMinigameSettings();
+		YamlConfiguration cs;
+		// keep the values of disabled features, which the profile doesn't have
+		if (settings.eloEnabled() && !settings.vaultEnabled())
+			cs = new YamlConfiguration();
+		else if (file.exists())
+			cs = YamlConfiguration.loadConfiguration(file);
+		else {
+			cs = new YamlConfiguration();
+			ConfigurationSection old = getConfig().getConfigurationSection(uuid.toString());
+			if (old != null) {
+				for (String key : old.getKeys(false))
+					cs.set(key, old.get(key));
+			}
+		}
 		if (settings.eloEnabled())
 			cs.set("elo", data.getELO());
 		if (!settings.vaultEnabled())
 			cs.set("currency", data.getCurrency());
 		cs.set("gamesPlayed", data.getGamesPlayed());
 		cs.set("achievements", data.getAchievementString());
-		saveConfig();
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		// two saves of the same profile would otherwise share a temporary file
+		synchronized (locks[(uuid.hashCode() & Integer.MAX_VALUE) % locks.length]) {
+			file.getParentFile().mkdirs();
+			cs.save(temp);
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+	
+	/**
+	 * Save several profiles to their files
+	 * 
+	 * @param profiles The profiles to save
+	 */
+	public void saveProfiles(Collection<PlayerProfile> profiles) {
+		for (PlayerProfile profile : profiles)
+			saveProfile(profile);
 	}
 	
 }
@@ -0,0 +1,300 @@
+package minigamemanager.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import minigamemanager.api.minigame.Minigame;
+import minigamemanager.api.minigame.MinigameShell;
+import minigamemanager.core.MinigameManager.ListenerEntry;
+
+/**
+ * Records how long minigame listeners take to handle events. Every call is
+ * counted, but only one in every {@link #getSampleRate()} events is actually
+ * timed, which keeps the overhead low enough to leave timings on.
+ * 
+ * @author DonkeyCore
+ */
+public final class EventTimings {
+	
+	/**
+	 * The registry holding the listeners currently being timed
+	 */
+	private final ListenerRegistry listeners;
+	/**
+	 * Timings of listeners that have since been removed, by minigame class
+	 */
+	private final Map<Class<? extends MinigameShell>, Timing> minigames = new ConcurrentHashMap<>();
+	/**
+	 * Timings of listeners that have since been removed, by rotation id
+	 */
+	private final Map<Integer, Timing> rotations = new ConcurrentHashMap<>();
+	/**
+	 * How many events pass for each one that is timed, or 0 if disabled
+	 */
+	private volatile int sampleRate = 0;
+	/**
+	 * Counts events to decide which ones to time. Not synchronized, since
+	 * sampling does not need to be exact.
+	 */
+	private int counter = 0;
+	/**
+	 * When the timings were last reset
+	 */
+	private volatile long resetTime = System.currentTimeMillis();
+	
+	EventTimings(ListenerRegistry listeners) {
+		this.listeners = listeners;
+	}
+	
+	/**
+	 * Get how many events pass for each one that is timed
+	 * 
+	 * @return The sample rate, or 0 if timings are disabled
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+	
+	/**
+	 * Set how many events pass for each one that is timed
+	 * 
+	 * @param sampleRate The sample rate, or 0 to disable timings
+	 */
+	public void setSampleRate(int sampleRate) {
+		this.sampleRate = Math.max(0, sampleRate);
+	}
+	
+	/**
+	 * Determine whether timings are being collected
+	 * 
+	 * @return Whether timings are enabled
+	 */
+	public boolean isEnabled() {
+		return sampleRate > 0;
+	}
+	
+	/**
+	 * Decide whether the event being dispatched should be timed
+	 * 
+	 * @return Whether to time the event
+	 */
+	boolean sample() {
+		int rate = sampleRate;
+		if (rate <= 0)
+			return false;
+		if (++counter < rate)
+			return false;
+		counter = 0;
+		return true;
+	}
+	
+	/**
+	 * Keep the timings of listeners that are being removed, so they still count
+	 * towards their minigame and rotation
+	 * 
+	 * @param removed The listeners being removed
+	 */
+	synchronized void retire(List<ListenerEntry> removed) {
+		for (ListenerEntry e : removed) {
+			if (e.getTiming().getCalls() == 0)
+				continue;
+			add(minigames, e.minigame.getClass(), e.getTiming());
+			if (e.minigame instanceof Minigame)
+				add(rotations, ((Minigame) e.minigame).getId(), e.getTiming());
+		}
+	}
+	
+	/**
+	 * Get the time since the timings were last reset
+	 * 
+	 * @return The elapsed time in milliseconds
+	 */
+	public long getElapsedMillis() {
+		return System.currentTimeMillis() - resetTime;
+	}
+	
+	/**
+	 * Get the combined timings of every listener, by the class of the minigame
+	 * hosting them
+	 * 
+	 * @return A new map of minigame classes to their timings
+	 */
+	public Map<Class<? extends MinigameShell>, Timing> getMinigameTimings() {
+		Map<Class<? extends MinigameShell>, Timing> m = new HashMap<>();
+		for (Map.Entry<Class<? extends MinigameShell>, Timing> e : minigames.entrySet())
+			add(m, e.getKey(), e.getValue());
+		for (ListenerEntry e : listeners.getEntries()) {
+			if (e.getTiming().getCalls() > 0)
+				add(m, e.minigame.getClass(), e.getTiming());
+		}
+		return m;
+	}
+	
+	/**
+	 * Get the combined timings of every listener hosted by a minigame, by the
+	 * id of the minigame's rotation
+	 * 
+	 * @return A new map of rotation ids to their timings
+	 */
+	public Map<Integer, Timing> getRotationTimings() {
+		Map<Integer, Timing> m = new HashMap<>();
+		for (Map.Entry<Integer, Timing> e : rotations.entrySet())
+			add(m, e.getKey(), e.getValue());
+		for (ListenerEntry e : listeners.getEntries()) {
+			if (e.minigame instanceof Minigame && e.getTiming().getCalls() > 0)
+				add(m, ((Minigame) e.minigame).getId(), e.getTiming());
+		}
+		return m;
+	}
+	
+	/**
+	 * Get the current listeners that have spent the most time handling events
+	 * 
+	 * @param limit The maximum amount of listeners to return
+	 * @return The slowest listeners, slowest first
+	 */
+	public List<ListenerEntry> getSlowestListeners(int limit) {
+		List<ListenerEntry> entries = new ArrayList<>(Arrays.asList(listeners.getEntries()));
+		Collections.sort(entries, new Comparator<ListenerEntry>() {
+			
+			@Override
+			public int compare(ListenerEntry a, ListenerEntry b) {
+				return Long.compare(b.getTiming().getEstimatedNanos(), a.getTiming().getEstimatedNanos());
+			}
+		});
+		return entries.subList(0, Math.min(limit, entries.size()));
+	}
+	
+	/**
+	 * Clear all timings collected so far
+	 */
+	public synchronized void reset() {
+		minigames.clear();
+		rotations.clear();
+		for (ListenerEntry e : listeners.getEntries())
+			e.getTiming().reset();
+		resetTime = System.currentTimeMillis();
+	}
+	
+	private static <K> void add(Map<K, Timing> map, K key, Timing timing) {
+		Timing t = map.get(key);
+		if (t == null)
+			map.put(key, t = new Timing());
+		t.add(timing);
+	}
+	
+	/**
+	 * Call counts and times for a listener, or a group of listeners
+	 * 
+	 * @author DonkeyCore
+	 */
+	public static final class Timing {
+		
+		/**
+		 * How many times the listener was called
+		 */
+		private final AtomicLong calls = new AtomicLong();
+		/**
+		 * How many of those calls were timed
+		 */
+		private final AtomicLong samples = new AtomicLong();
+		/**
+		 * The total time of the timed calls
+		 */
+		private final AtomicLong sampledNanos = new AtomicLong();
+		/**
+		 * The longest timed call
+		 */
+		private final AtomicLong maxNanos = new AtomicLong();
+		
+		Timing() {}
+		
+		/**
+		 * Record a call
+		 * 
+		 * @param nanos How long the call took, or -1 if it was not timed
+		 */
+		void record(long nanos) {
+			calls.incrementAndGet();
+			if (nanos < 0)
+				return;
+			samples.incrementAndGet();
+			sampledNanos.addAndGet(nanos);
+			updateMax(nanos);
+		}
+		
+		private void add(Timing other) {
+			calls.addAndGet(other.calls.get());
+			samples.addAndGet(other.samples.get());
+			sampledNanos.addAndGet(other.sampledNanos.get());
+			updateMax(other.maxNanos.get());
+		}
+		
+		private void updateMax(long nanos) {
+			long max;
+			while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos));
+		}
+		
+		private void reset() {
+			calls.set(0);
+			samples.set(0);
+			sampledNanos.set(0);
+			maxNanos.set(0);
+		}
+		
+		/**
+		 * Get how many times the listener was called
+		 * 
+		 * @return The amount of calls
+		 */
+		public long getCalls() {
+			return calls.get();
+		}
+		
+		/**
+		 * Get how many calls were timed
+		 * 
+		 * @return The amount of timed calls
+		 */
+		public long getSamples() {
+			return samples.get();
+		}
+		
+		/**
+		 * Get the average time of a call
+		 * 
+		 * @return The average time in nanoseconds
+		 */
+		public long getAverageNanos() {
+			long s = samples.get();
+			return s == 0 ? 0 : sampledNanos.get() / s;
+		}
+		
+		/**
+		 * Get the longest time a timed call took
+		 * 
+		 * @return The maximum time in nanoseconds
+		 */
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+		
+		/**
+		 * Get the estimated total time of every call, based on the timed calls
+		 * 
+		 * @return The estimated cumulative time in nanoseconds
+		 */
+		public long getEstimatedNanos() {
+			return getAverageNanos() * calls.get();
+		}
+		
+	}
+	
+}
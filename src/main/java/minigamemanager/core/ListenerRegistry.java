@@ -0,0 +1,134 @@
+package minigamemanager.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.event.Event;
+
+import minigamemanager.api.minigame.MinigameShell;
+import minigamemanager.core.MinigameManager.ListenerEntry;
+import minigamemanager.core.MinigameManager.ListenerGroup;
+
+/**
+ * Holds the listeners registered by minigames. Every change publishes a new
+ * immutable snapshot, so events can be dispatched from any thread without
+ * locking or allocating, while changes only copy the array of listeners.
+ * 
+ * @author DonkeyCore
+ */
+final class ListenerRegistry {
+	
+	/**
+	 * The current listeners, replaced whenever they change
+	 */
+	private volatile Snapshot snapshot = new Snapshot(new ListenerEntry[0], false);
+	
+	/**
+	 * Add a listener
+	 * 
+	 * @param entry The listener to add
+	 */
+	synchronized void add(ListenerEntry entry) {
+		ListenerEntry[] old = snapshot.entries;
+		ListenerEntry[] entries = Arrays.copyOf(old, old.length + 1);
+		entries[old.length] = entry;
+		snapshot = new Snapshot(entries, snapshot.matchHandlerLists);
+	}
+	
+	/**
+	 * Remove every listener hosted by a minigame
+	 * 
+	 * @param minigame The minigame whose listeners should be removed
+	 * @return The listeners that were removed
+	 */
+	synchronized List<ListenerEntry> remove(MinigameShell minigame) {
+		List<ListenerEntry> kept = new ArrayList<>();
+		List<ListenerEntry> removed = new ArrayList<>();
+		for (ListenerEntry e : snapshot.entries) {
+			if (e.minigame.equals(minigame))
+				removed.add(e);
+			else
+				kept.add(e);
+		}
+		if (!removed.isEmpty())
+			snapshot = new Snapshot(kept.toArray(new ListenerEntry[kept.size()]), snapshot.matchHandlerLists);
+		return removed;
+	}
+	
+	/**
+	 * Set whether listeners only receive events using the same handler list as
+	 * the event they listen to, which is how Bukkit calls its own listeners
+	 * 
+	 * @param matchHandlerLists Whether to match handler lists
+	 */
+	synchronized void setMatchHandlerLists(boolean matchHandlerLists) {
+		snapshot = new Snapshot(snapshot.entries, matchHandlerLists);
+	}
+	
+	/**
+	 * Get every registered listener. The returned array must not be modified.
+	 * 
+	 * @return The listeners, in the order they were added
+	 */
+	ListenerEntry[] getEntries() {
+		return snapshot.entries;
+	}
+	
+	/**
+	 * Get the listeners that should receive an event of the given class. This
+	 * includes listeners for any superclass or interface of the event, and the
+	 * result is cached until the listeners change.
+	 * 
+	 * @param event The concrete class of the event being called
+	 * @return The listeners for the event, grouped by minigame
+	 */
+	ListenerGroup get(Class<? extends Event> event) {
+		Snapshot s = snapshot;
+		ListenerGroup group = s.groups.get(event);
+		if (group == null) {
+			List<ListenerEntry> matching = new ArrayList<>();
+			Class<? extends Event> handlers = s.matchHandlerLists ? NativeEventRegistrar.getRegistrationClass(event) : null;
+			for (ListenerEntry e : s.entries) {
+				if (e.event.isAssignableFrom(event) && (!s.matchHandlerLists || NativeEventRegistrar.getRegistrationClass(e.event) == handlers))
+					matching.add(e);
+			}
+			group = matching.isEmpty() ? ListenerGroup.EMPTY : new ListenerGroup(event, matching);
+			// the groups belong to this snapshot, so a group built from old listeners is never cached for new ones
+			ListenerGroup existing = s.groups.putIfAbsent(event, group);
+			if (existing != null)
+				group = existing;
+		}
+		return group;
+	}
+	
+	/**
+	 * An immutable view of the registered listeners, along with the groups
+	 * built from them so far
+	 * 
+	 * @author DonkeyCore
+	 */
+	private static final class Snapshot {
+		
+		/**
+		 * Every listener, in the order they were added
+		 */
+		private final ListenerEntry[] entries;
+		/**
+		 * Whether listeners have to share a handler list with the event
+		 */
+		private final boolean matchHandlerLists;
+		/**
+		 * The listeners that receive each concrete event class, built on demand
+		 */
+		private final ConcurrentHashMap<Class<? extends Event>, ListenerGroup> groups = new ConcurrentHashMap<>();
+		
+		private Snapshot(ListenerEntry[] entries, boolean matchHandlerLists) {
+			this.entries = entries;
+			this.matchHandlerLists = matchHandlerLists;
+		}
+		
+	}
+	
+}
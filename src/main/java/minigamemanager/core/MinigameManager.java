@@ -4,31 +4,49 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
 import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import minigamemanager.api.achievement.Achievement;
+import minigamemanager.api.achievement.AchievementRegistry;
 import minigamemanager.api.config.MinigameConfig;
 import minigamemanager.api.minigame.Minigame;
 import minigamemanager.api.minigame.Minigame.EventListener;
 import minigamemanager.api.minigame.MinigameAttributes;
 import minigamemanager.api.minigame.MinigameData;
 import minigamemanager.api.minigame.MinigameShell;
+import minigamemanager.api.profile.OfflineProfileCache;
+import minigamemanager.api.profile.ProfileDatabase;
+import minigamemanager.api.profile.ProfileStore;
+import minigamemanager.api.rotation.Rotation;
 import minigamemanager.api.rotation.RotationManager;
 import minigamemanager.config.MinigameLocations;
 import minigamemanager.config.MinigameMessages;
 import minigamemanager.config.MinigameSettings;
 import minigamemanager.config.PlayerProfileConfiguration;
+import minigamemanager.events.EventBus;
 import minigamemanager.events.minigame.MinigameRegisterEvent;
 import minigamemanager.events.minigame.MinigameUnregisterEvent;
+import minigamemanager.rotations.DefaultRotationManager;
 import net.milkbowl.vault.economy.Economy;
 
 /*
@@ -82,7 +100,59 @@ public final class MinigameManager {
 	/**
 	 * The list of minigames requesting events
 	 */
-	List<ListenerEntry> listeners = new ArrayList<>();
+	final ListenerRegistry listeners = new ListenerRegistry();
+	/**
+	 * How long minigame listeners spend handling events
+	 */
+	private final EventTimings timings = new EventTimings(listeners);
+	/**
+	 * Sends MinigameManager's own events
+	 */
+	private final EventBus eventBus = new EventBus(this);
+	/**
+	 * Loads player profiles in the background
+	 */
+	final ListeningExecutorService profileExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(2, new ThreadFactory() {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "MinigameManager Profile I/O #" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}));
+	/**
+	 * Saves player profiles in the background, one batch at a time, so that
+	 * saves of the same profile always finish in the order they were made
+	 */
+	final ListeningExecutorService profileWriter = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor(new ThreadFactory() {
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "MinigameManager Profile Writer");
+			t.setDaemon(true);
+			return t;
+		}
+	}));
+	/**
+	 * The MySQL or SQLite profile database. Null if neither is enabled.
+	 */
+	ProfileDatabase profileDatabase;
+	/**
+	 * Where player profiles are loaded from and saved to
+	 */
+	ProfileStore profileStore;
+	/**
+	 * Cache of offline players' stats. Null if disabled.
+	 */
+	OfflineProfileCache offlineCache;
+	/**
+	 * Registers listened events directly with Bukkit. Null if the custom plugin
+	 * manager is injected instead.
+	 */
+	private volatile NativeEventRegistrar registrar;
 	/**
 	 * The plugin owning MinigameManager
 	 */
@@ -96,9 +166,9 @@ public final class MinigameManager {
 	 */
 	private final List<MinigameConfig> minigameConfigs = new ArrayList<>();
 	/**
-	 * The list of Achievements
+	 * The registered Achievements
 	 */
-	private final List<Achievement> achievements = new ArrayList<>();
+	private final AchievementRegistry achievements = new AchievementRegistry();
 	
 	/**
 	 * Create a new instance of MinigameManager
@@ -193,6 +263,74 @@ public final class MinigameManager {
 		return config;
 	}
 	
+	/**
+	 * Get the timings of minigame listeners
+	 * 
+	 * @return An instance of {@link EventTimings}
+	 */
+	public EventTimings getEventTimings() {
+		return timings;
+	}
+	
+	/**
+	 * Get the bus used to send MinigameManager's own events
+	 * 
+	 * @return An instance of {@link EventBus}
+	 */
+	public EventBus getEventBus() {
+		return eventBus;
+	}
+	
+	/**
+	 * Get the executor used to load player profiles off the main thread
+	 * 
+	 * @return A {@link ListeningExecutorService} for profile I/O
+	 */
+	public ListeningExecutorService getProfileExecutor() {
+		return profileExecutor;
+	}
+	
+	/**
+	 * Get the executor used to save player profiles off the main thread. It
+	 * runs one save at a time, in the order they were made.
+	 * 
+	 * @return A single-threaded {@link ListeningExecutorService} for saving
+	 *         profiles
+	 */
+	public ListeningExecutorService getProfileWriter() {
+		return profileWriter;
+	}
+	
+	/**
+	 * Get where player profiles are loaded from and saved to
+	 * 
+	 * @return The {@link ProfileStore} in use
+	 */
+	public ProfileStore getProfileStore() {
+		return profileStore;
+	}
+	
+	/**
+	 * Get the MySQL or SQLite database holding player profiles. Its
+	 * connections are shared, so it must not be closed.
+	 * 
+	 * @return The {@link ProfileDatabase}, or null if neither is enabled
+	 */
+	public ProfileDatabase getProfileDatabase() {
+		return profileDatabase;
+	}
+	
+	/**
+	 * Get the cache of the ELO, games played and currency of players who are
+	 * not online, for leaderboards and lookups that shouldn't load a whole
+	 * profile
+	 * 
+	 * @return The {@link OfflineProfileCache}, or null if it is disabled
+	 */
+	public OfflineProfileCache getOfflineProfileCache() {
+		return offlineCache;
+	}
+	
 	/**
 	 * Get the configuration for messages translated to other languages
 	 * 
@@ -222,21 +360,36 @@ public final class MinigameManager {
 	}
 	
 	/**
-	 * Register one or more achievements
+	 * Register one or more achievements. Achievements that are already
+	 * registered are skipped.
 	 * 
 	 * @param a The achievements to register
+	 * 
+	 * @throws IllegalArgumentException If a different achievement already has
+	 *             the same ID, or the same name in the same minigame
 	 */
 	public void registerAchievements(Achievement... a) {
-		achievements.addAll(Arrays.asList(a));
+		for (Achievement achievement : a)
+			achievements.register(achievement);
 	}
 	
 	/**
 	 * Get the list of registered achievements
 	 * 
-	 * @return An array of achievements
+	 * @return A read-only list of achievements
+	 */
+	public List<Achievement> getAchievements() {
+		return achievements.getAchievements();
+	}
+	
+	/**
+	 * Get the registry of achievements, which gives each achievement its
+	 * ordinal
+	 * 
+	 * @return The AchievementRegistry instance
 	 */
-	public Achievement[] getAchievements() {
-		return achievements.toArray(new Achievement[achievements.size()]);
+	public AchievementRegistry getAchievementRegistry() {
+		return achievements;
 	}
 	
 	/**
@@ -256,7 +409,7 @@ public final class MinigameManager {
 		if (!attr.isDefault())
 			this.minigameConfigs.add(new MinigameConfig(minigame));
 		this.minigames.put(minigame, new MinigameData(minimumPlayers, attr.isDefault() ? null : new MinigameConfig(minigame)));
-		Bukkit.getPluginManager().callEvent(new MinigameRegisterEvent(minigame, minimumPlayers));
+		eventBus.post(new MinigameRegisterEvent(minigame, minimumPlayers));
 		try {
 			// optional onRegister method
 			Method onRegister = minigame.getMethod("onRegister", MinigameManager.class);
@@ -283,7 +436,7 @@ public final class MinigameManager {
 		if (b) {
 			if (c != null)
 				this.minigameConfigs.remove(c);
-			Bukkit.getPluginManager().callEvent(new MinigameUnregisterEvent(minigame));
+			eventBus.post(new MinigameUnregisterEvent(minigame));
 			try {
 				// optional onUnregister method
 				Method onUnregister = minigame.getMethod("onUnregister", MinigameManager.class);
@@ -321,10 +474,47 @@ public final class MinigameManager {
 	 * @param listener What to do when the event happens
 	 */
 	public void addListener(MinigameShell minigame, Class<? extends Event> event, EventListener<? extends Event> listener) {
+		addListener(minigame, event, listener, false);
+	}
+	
+	/**
+	 * Add listeners for a minigame for a certain event. Asynchronous events
+	 * are only sent to listeners that are async-safe.
+	 * 
+	 * @param minigame The minigame that hosts this listener
+	 * @param event The event to listen for
+	 * @param listener What to do when the event happens
+	 * @param async Whether the listener is safe to call off the main thread
+	 */
+	public void addListener(MinigameShell minigame, Class<? extends Event> event, EventListener<? extends Event> listener, boolean async) {
+		addListener(minigame, event, listener, EventPriority.NORMAL, false, async);
+	}
+	
+	/**
+	 * Add listeners for a minigame for a certain event. Listeners are called in
+	 * order of priority, and those ignoring cancelled events are skipped once a
+	 * {@link Cancellable} event has been cancelled.
+	 * 
+	 * @param minigame The minigame that hosts this listener
+	 * @param event The event to listen for
+	 * @param listener What to do when the event happens
+	 * @param priority When to call the listener relative to other listeners
+	 * @param ignoreCancelled Whether to skip the listener for cancelled events
+	 * @param async Whether the listener is safe to call off the main thread
+	 */
+	public void addListener(MinigameShell minigame, Class<? extends Event> event, EventListener<? extends Event> listener, EventPriority priority, boolean ignoreCancelled, boolean async) {
 		Validate.notNull(minigame, "Minigame shell must not be null");
 		Validate.notNull(event, "Event must not be null");
 		Validate.notNull(listener, "Listener must not be null");
-		listeners.add(new ListenerEntry(minigame, event, listener));
+		Validate.notNull(priority, "Priority must not be null");
+		listeners.add(new ListenerEntry(minigame, event, listener, priority, ignoreCancelled, async));
+		NativeEventRegistrar r = registrar;
+		if (r != null && !r.register(event, priority)) {
+			// Bukkit cannot call every subclass of this event directly, so every event has to go through the custom plugin manager
+			plugin.getLogger().info(event.getSimpleName() + " has no handler list of its own, falling back to plugin manager injection...");
+			setRegistrar(null);
+			plugin.injectPluginManager(true);
+		}
 	}
 	
 	/**
@@ -334,14 +524,124 @@ public final class MinigameManager {
 	 */
 	public void clearListeners(MinigameShell minigame) {
 		Validate.notNull(minigame, "Minigame must not be null");
-		Iterator<ListenerEntry> it = listeners.iterator();
-		while (it.hasNext()) {
-			ListenerEntry e = it.next();
-			if (e.minigame.equals(minigame))
-				it.remove();
+		List<ListenerEntry> removed = listeners.remove(minigame);
+		timings.retire(removed);
+		NativeEventRegistrar r = registrar;
+		if (r != null) {
+			for (ListenerEntry e : removed)
+				r.unregister(e.event, e.priority);
 		}
 	}
 	
+	/**
+	 * Set how listened events are registered with Bukkit
+	 * 
+	 * @param registrar The registrar to register events with, or null if the
+	 *            custom plugin manager is injected instead
+	 */
+	synchronized void setRegistrar(NativeEventRegistrar registrar) {
+		if (this.registrar != null)
+			this.registrar.unregisterAll();
+		this.registrar = registrar;
+		listeners.setMatchHandlerLists(registrar != null);
+	}
+	
+	/**
+	 * Determine whether any minigame is listening for an event
+	 * 
+	 * @param event The concrete class of the event
+	 * @return Whether the event has any minigame listeners
+	 */
+	public boolean hasListeners(Class<? extends Event> event) {
+		return getListeners(event).all.length > 0;
+	}
+	
+	/**
+	 * Get the listeners that should receive an event of the given class
+	 * 
+	 * @param event The concrete class of the event being called
+	 * @return The listeners for the event, grouped by minigame
+	 * @see ListenerRegistry#get(Class)
+	 */
+	ListenerGroup getListeners(Class<? extends Event> event) {
+		return listeners.get(event);
+	}
+	
+	/**
+	 * Send an event to the minigames listening for it. Events involving a
+	 * player are only sent to the minigame that player is playing.
+	 * Asynchronous events are only sent to async-safe listeners.
+	 * 
+	 * @param event The event being called
+	 */
+	void callListeners(Event event) {
+		callListeners(event, null);
+	}
+	
+	/**
+	 * Send an event to the minigames listening for it with a certain priority
+	 * 
+	 * @param event The event being called
+	 * @param priority The priority of listeners to call, or null to call all
+	 *            of them in order of priority
+	 * @see #callListeners(Event)
+	 */
+	void callListeners(Event event, EventPriority priority) {
+		ListenerGroup group = getListeners(event.getClass());
+		boolean async = event.isAsynchronous();
+		if (async) {
+			if (!group.warned && group.async.all.length < group.all.length) {
+				group.warned = true;
+				plugin.getLogger().warning("Some listeners for " + event.getEventName() + " are not async-safe and will not receive it! Use listenAsyncEvent for asynchronous events.");
+			}
+			group = group.async;
+		}
+		if (group.all.length == 0)
+			return;
+		Player player = group.extractor.extract(event);
+		ListenerEntry[] entries = group.all;
+		// other rotation managers can only be read on the main thread, so async-safe listeners receive every asynchronous event
+		if (player != null && (!async || rotationManager instanceof DefaultRotationManager))
+			entries = group.forMinigame(getPlayingMinigame(player));
+		boolean timed = timings.isEnabled();
+		boolean sampled = timed && timings.sample();
+		Cancellable cancellable = event instanceof Cancellable ? (Cancellable) event : null;
+		for (ListenerEntry e : entries) {
+			if (priority != null && e.priority != priority)
+				continue;
+			if (e.ignoreCancelled && cancellable != null && cancellable.isCancelled())
+				continue;
+			long start = sampled ? System.nanoTime() : 0;
+			try {
+				e.call(event);
+			} catch (Throwable ex) {
+				plugin.getLogger().log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + e.listener.getClass().getName(), ex);
+			}
+			if (timed)
+				e.getTiming().record(sampled ? System.nanoTime() - start : -1);
+		}
+	}
+	
+	/**
+	 * Find the minigame that a player is currently playing
+	 * 
+	 * @param player The player to look up
+	 * @return The minigame the player is in-game for, or null if they are not
+	 *         playing
+	 */
+	private Minigame getPlayingMinigame(Player player) {
+		RotationManager rm = rotationManager;
+		if (rm == null)
+			return null;
+		// the default rotation manager keeps an index of in-game players
+		if (rm instanceof DefaultRotationManager)
+			return ((DefaultRotationManager) rm).getPlayingMinigame(player.getUniqueId());
+		Rotation r = rm.getRotation(player);
+		if (r == null || !r.isInGame(player.getUniqueId()))
+			return null;
+		return r.getCurrentMinigame();
+	}
+	
 	/**
 	 * Get the MinigameData for a specified Minigame
 	 *
@@ -375,6 +675,101 @@ public final class MinigameManager {
 		return m;
 	}
 	
+	/**
+	 * The listeners for a single event class, grouped so that an event
+	 * involving a player only has to be sent to the minigame that player is in.
+	 * Listeners are ordered by priority, then by the order they were added.
+	 * 
+	 * @author DonkeyCore
+	 */
+	static final class ListenerGroup {
+		
+		/**
+		 * Group for event classes that no minigame listens to
+		 */
+		static final ListenerGroup EMPTY = new ListenerGroup(Event.class, new ArrayList<ListenerEntry>());
+		
+		/**
+		 * Finds the player involved in events of this class
+		 */
+		final PlayerExtractor extractor;
+		/**
+		 * Every listener for the event, in the order they should be called
+		 */
+		final ListenerEntry[] all;
+		/**
+		 * Listeners that are not hosted by an actual minigame (such as menus),
+		 * which receive events regardless of which players are involved
+		 */
+		final ListenerEntry[] unbound;
+		/**
+		 * The listeners of each minigame, together with the unbound listeners.
+		 * Keyed by identity since a minigame's hash code changes with its
+		 * rotation.
+		 */
+		private final Map<MinigameShell, ListenerEntry[]> byMinigame = new IdentityHashMap<>();
+		/**
+		 * The async-safe listeners, which are the only ones to receive
+		 * asynchronous events
+		 */
+		final ListenerGroup async;
+		/**
+		 * Whether a warning has been logged about listeners missing an
+		 * asynchronous event
+		 */
+		volatile boolean warned = false;
+		
+		ListenerGroup(Class<? extends Event> event, List<ListenerEntry> entries) {
+			this.extractor = entries.isEmpty() ? PlayerExtractor.NONE : PlayerExtractor.forEvent(event);
+			this.all = entries.toArray(new ListenerEntry[entries.size()]);
+			// stable sort, so listeners of the same priority keep their order
+			Arrays.sort(all, new Comparator<ListenerEntry>() {
+				
+				@Override
+				public int compare(ListenerEntry a, ListenerEntry b) {
+					return a.priority.compareTo(b.priority);
+				}
+			});
+			List<ListenerEntry> async = new ArrayList<>();
+			for (ListenerEntry e : all) {
+				if (e.async)
+					async.add(e);
+			}
+			this.async = async.size() == all.length ? this : new ListenerGroup(event, async);
+			List<ListenerEntry> unbound = new ArrayList<>();
+			for (ListenerEntry e : all) {
+				if (!(e.minigame instanceof Minigame))
+					unbound.add(e);
+			}
+			this.unbound = unbound.toArray(new ListenerEntry[unbound.size()]);
+			for (ListenerEntry e : all) {
+				if (!(e.minigame instanceof Minigame) || byMinigame.containsKey(e.minigame))
+					continue;
+				List<ListenerEntry> owned = new ArrayList<>();
+				for (ListenerEntry o : all) {
+					if (o.minigame == e.minigame || !(o.minigame instanceof Minigame))
+						owned.add(o);
+				}
+				byMinigame.put(e.minigame, owned.toArray(new ListenerEntry[owned.size()]));
+			}
+		}
+		
+		/**
+		 * Get the listeners that should receive an event involving a player
+		 * 
+		 * @param minigame The minigame the player is playing, or null if the
+		 *            player is not in-game
+		 * @return The minigame's listeners along with the unbound listeners
+		 */
+		ListenerEntry[] forMinigame(MinigameShell minigame) {
+			if (minigame == null)
+				return unbound;
+			ListenerEntry[] entries = byMinigame.get(minigame);
+			return entries == null ? unbound : entries;
+		}
+		
+	}
+	
 	/**
 	 * Represents a minigame that is listening to an event
 	 * 
@@ -385,11 +780,60 @@ public final class MinigameManager {
 		public final MinigameShell minigame;
 		public final Class<? extends Event> event;
 		public final EventListener<? extends Event> listener;
+		/**
+		 * When the listener is called relative to other listeners
+		 */
+		public final EventPriority priority;
+		/**
+		 * Whether the listener is skipped for cancelled events
+		 */
+		public final boolean ignoreCancelled;
+		/**
+		 * Whether the listener is safe to call off the main thread
+		 */
+		public final boolean async;
+		/**
+		 * The listener viewed as accepting any event, so it can be called
+		 * directly without reflection. Only events of type {@link #event} are
+		 * ever passed to it.
+		 */
+		private final EventListener<Event> invoker;
+		/**
+		 * How long the listener spends handling events
+		 */
+		private final EventTimings.Timing timing = new EventTimings.Timing();
 		
 		public ListenerEntry(MinigameShell minigame, Class<? extends Event> event, EventListener<? extends Event> listener) {
+			this(minigame, event, listener, EventPriority.NORMAL, false, false);
+		}
+		
+		@SuppressWarnings("unchecked")
+		public ListenerEntry(MinigameShell minigame, Class<? extends Event> event, EventListener<? extends Event> listener, EventPriority priority, boolean ignoreCancelled, boolean async) {
 			this.minigame = minigame;
 			this.event = event;
 			this.listener = listener;
+			this.priority = priority;
+			this.ignoreCancelled = ignoreCancelled;
+			this.async = async;
+			this.invoker = (EventListener<Event>) listener;
+		}
+		
+		/**
+		 * Send an event to the listener
+		 * 
+		 * @param e The event, which must be an instance of {@link #event}
+		 */
+		public void call(Event e) {
+			invoker.onEvent(e);
+		}
+		
+		/**
+		 * Get how long the listener has spent handling events
+		 * 
+		 * @return The listener's timings
+		 */
+		public EventTimings.Timing getTiming() {
+			return timing;
 		}
 		
 	}
@@ -1,19 +1,50 @@
 package minigamemanager.core;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
+import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
 import org.bukkit.Server;
-import org.bukkit.entity.Player;
+import org.bukkit.command.CommandSender;
 import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import minigamemanager.api.db.ConnectionPool;
+import minigamemanager.api.db.ConnectionPool.ConnectionFactory;
+import minigamemanager.api.db.MySQL;
+import minigamemanager.api.db.NoDriverException;
+import minigamemanager.api.db.SQLite;
 import minigamemanager.api.minigame.Minigame;
+import minigamemanager.api.minigame.Minigame.EventListener;
 import minigamemanager.api.minigame.MinigameAttributes;
+import minigamemanager.api.profile.AbstractProfileStore;
+import minigamemanager.api.profile.CachingProfileStore;
+import minigamemanager.api.profile.MirroredProfileStore;
+import minigamemanager.api.profile.OfflineProfileCache;
 import minigamemanager.api.profile.PlayerProfile;
+import minigamemanager.api.profile.ProfileDatabase;
+import minigamemanager.api.profile.ProfileDatabase.Dialect;
+import minigamemanager.api.profile.ProfileMigration;
+import minigamemanager.api.profile.SqlProfileStore;
+import minigamemanager.api.profile.YamlProfileStore;
 import minigamemanager.api.rotation.Rotation;
 import minigamemanager.api.rotation.RotationManager;
 import minigamemanager.api.rotation.SubstitutionHandler;
@@ -25,6 +56,7 @@ import minigamemanager.config.MinigameLocations;
 import minigamemanager.config.MinigameMessages;
 import minigamemanager.config.MinigameSettings;
 import minigamemanager.config.PlayerProfileConfiguration;
+import minigamemanager.events.sign.SignClickEvent;
 import minigamemanager.listeners.JoinQuitListener;
 import minigamemanager.listeners.MinigameListener;
 import minigamemanager.rotations.DefaultRotationManager;
@@ -45,6 +77,11 @@ public class MinigameManagerPlugin extends JavaPlugin {
 	 * Whether the server is starting up or there is simply a plugin reload
 	 */
 	private boolean serverStartup = false;
+	/**
+	 * The thread copying profiles between backends, or null if no migration
+	 * is running
+	 */
+	private volatile Thread migrationThread = null;
 	
 	/**
 	 * <b>Bukkit implementation method</b><br>
@@ -57,35 +94,6 @@ public class MinigameManagerPlugin extends JavaPlugin {
 		manager = new MinigameManager(this);
 		PluginDescriptionFile description = getDescription();
 		getLogger().info("Enabling " + description.getName() + " v" + description.getVersion() + "...");
-		// not as malicious as this sounds - custom plugin manager is just used to handle events more easily
-		getLogger().info("Injecting custom plugin manager...");
-		// get server instance and class
-		Server server = Bukkit.getServer();
-		Class<?> clazz = server.getClass();
-		try {
-			// attempt to get the pluginManager field and edit it
-			Field pluginManager = clazz.getDeclaredField("pluginManager");
-			pluginManager.setAccessible(true);
-			// the current plugin manager will be used to do the actual processing
-			PluginManager pm = (PluginManager) pluginManager.get(server);
-			// there shouldn't already be a MinigamePluginManagerWrapper instance
-			if (serverStartup = !pm.getClass().getName().equals(MinigamePluginManagerWrapper.class.getName()))
-				// inject the wrapper so that the plugin can send all events to minigames
-				pluginManager.set(server, new MinigamePluginManagerWrapper(pm));
-			else {
-				getLogger().info("Previous MinigamePluginManagerWrapper found, finding root...");
-				while (pm.getClass().getName().equals(MinigamePluginManagerWrapper.class.getName())) {
-					Field f = pm.getClass().getDeclaredField("pm");
-					f.setAccessible(true);
-					pm = (PluginManager) f.get(pm);
-				}
-				getLogger().info("Found root of type " + pm.getClass().getSimpleName());
-				pluginManager.set(server, new MinigamePluginManagerWrapper(pm));
-			}
-		} catch (NoSuchFieldException | SecurityException | IllegalAccessException e) {
-			e.printStackTrace();
-			getLogger().severe("Failed to inject plugin manager! EVENTS WILL NOT WORK PROPERLY!");
-		}
 		getLogger().info("Initializing config... (Part 1/4: General)");
 		saveDefaultConfig();
 		manager.config = new MinigameSettings();
@@ -95,6 +103,32 @@ public class MinigameManagerPlugin extends JavaPlugin {
 		manager.locations = new MinigameLocations();
 		getLogger().info("Initializing config... (Part 4/4: Profiles)");
 		manager.profileConf = new PlayerProfileConfiguration();
+		if (manager.config.mysqlEnabled() || manager.config.sqliteEnabled())
+			connectProfileDatabase();
+		AbstractProfileStore store = new YamlProfileStore(manager.profileConf, manager.profileExecutor, manager.profileWriter);
+		if (manager.profileDatabase != null) {
+			SqlProfileStore database = new SqlProfileStore(manager.profileDatabase, manager.profileExecutor, manager.profileWriter);
+			store = manager.config.profileFileBackup() ? new MirroredProfileStore(database, store, manager.profileExecutor, manager.profileWriter) : database;
+		}
+		if (manager.config.offlineCacheEnabled()) {
+			getLogger().info("Opening offline profile cache...");
+			try {
+				manager.offlineCache = new OfflineProfileCache(new File(getDataFolder(), manager.config.offlineCacheFile()), manager.config.offlineCacheCapacity());
+				store = new CachingProfileStore(store, manager.offlineCache, manager.profileExecutor, manager.profileWriter);
+			} catch (IOException | IllegalArgumentException e) {
+				e.printStackTrace();
+				getLogger().warning("Could not open the offline profile cache! It will not be used.");
+			}
+		}
+		manager.profileStore = store;
+		if (manager.config.nativeEventDispatch()) {
+			getLogger().info("Registering minigame events natively...");
+			// remove any custom plugin manager left over from a reload
+			serverStartup = !injectPluginManager(false);
+			manager.setRegistrar(new NativeEventRegistrar(manager));
+		} else
+			serverStartup = !injectPluginManager(true);
+		manager.getEventTimings().setSampleRate(manager.config.eventTimingsSampleRate());
 		// Optional Vault economy support
 		if (manager.config.getConfig().getConfigurationSection("profiles").getBoolean("vault")) {
 			if (Bukkit.getPluginManager().getPlugin("Vault") == null)
@@ -117,7 +151,15 @@ public class MinigameManagerPlugin extends JavaPlugin {
 		getCommand("location").setExecutor(new CommandLocation(manager));
 		getLogger().info("Registering listeners...");
 		Bukkit.getPluginManager().registerEvents(new JoinQuitListener(manager), this);
-		Bukkit.getPluginManager().registerEvents(new MinigameListener(manager), this);
+		final MinigameListener minigameListener = new MinigameListener(manager);
+		Bukkit.getPluginManager().registerEvents(minigameListener, this);
+		manager.getEventBus().subscribe(SignClickEvent.class, new EventListener<SignClickEvent>() {
+			
+			@Override
+			public void onEvent(SignClickEvent event) {
+				minigameListener.onSignClick(event);
+			}
+		});
 		getLogger().info("Creating rotation manager...");
 		// lock to prevent further editing
 		SubstitutionHandler.lock();
@@ -138,6 +180,19 @@ public class MinigameManagerPlugin extends JavaPlugin {
 					manager.rotationManager.start(rotation);
 			}
 		});
+		// Save profiles that changed every once in a while
+		long flush = manager.config.profileFlushInterval() * 20L;
+		Bukkit.getScheduler().scheduleSyncRepeatingTask(this, new Runnable() {
+			public void run() {
+				PlayerProfile.flushProfiles();
+			}
+		}, flush, flush);
+		// Unload profiles of players who have left once they are saved
+		Bukkit.getScheduler().scheduleSyncRepeatingTask(this, new Runnable() {
+			public void run() {
+				PlayerProfile.evictProfiles(manager.config.profileCacheSize(), manager.config.profileCacheIdleMinutes() * 60000L);
+			}
+		}, 1200L, 1200L);
 		// load all of the default minigames if enabled
 		loadDefaultMinigames();
 		getLogger().info(description.getName() + " v" + description.getVersion() + " by DonkeyCore has been enabled!");
@@ -154,13 +209,348 @@ public class MinigameManagerPlugin extends JavaPlugin {
 		// Prepare everything for shutdown
 		getLogger().info("Stopping rotations...");
 		manager.rotationManager.shutdown();
+		// A migration can pick up where it left off, so don't let it hold up the shutdown
+		cancelMigration();
+		Thread migration = migrationThread;
+		if (migration != null) {
+			getLogger().info("Stopping profile migration...");
+			try {
+				migration.join(manager.config.profileShutdownTimeout() * 1000L);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
 		// Save everybody's profiles
 		getLogger().info("Saving player profiles...");
-		for (Player player : Bukkit.getOnlinePlayers())
-			PlayerProfile.getPlayerProfile(player.getUniqueId()).saveProfile();
+		PlayerProfile.flushProfiles();
+		// let every save still queued finish, including those of players who just left, within one timeout for all of them
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(manager.config.profileShutdownTimeout());
+		for (ListeningExecutorService executor : new ListeningExecutorService[] { manager.profileWriter, manager.profileExecutor }) {
+			executor.shutdown();
+			try {
+				if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					getLogger().severe("Timed out saving player profiles! Some changes may not have been saved.");
+					executor.shutdownNow();
+				}
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				executor.shutdownNow();
+			}
+		}
+		if (manager.profileDatabase != null) {
+			manager.profileDatabase.getPool().close();
+			manager.profileDatabase = null;
+		}
+		if (manager.offlineCache != null) {
+			try {
+				manager.offlineCache.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			manager.offlineCache = null;
+		}
 		getLogger().info(getDescription().getName() + " v" + getDescription().getVersion() + " by DonkeyCore has been disabled!");
 	}
 	
+	/**
+	 * Open the connection pool for the MySQL or SQLite profile database and
+	 * create its table. If the database cannot be reached, profiles are kept
+	 * in config files instead.
+	 */
+	private void connectProfileDatabase() {
+		if (manager.config.mysqlEnabled() && manager.config.sqliteEnabled())
+			getLogger().warning("Both MySQL and SQLite are enabled in config! Only MySQL will be used.");
+		manager.profileDatabase = openProfileDatabase(manager.config.mysqlEnabled() ? Dialect.MYSQL : Dialect.SQLITE);
+		if (manager.profileDatabase == null) {
+			getLogger().warning("Could not connect to the profile database! Player profiles will be saved to config files instead.");
+			return;
+		}
+		// moving the achievements of a big table takes a while, so don't hold up the server for it
+		Futures.addCallback(manager.profileDatabase.migrateAchievements(manager.profileExecutor), new FutureCallback<Integer>() {
+			
+			@Override
+			public void onSuccess(Integer migrated) {
+				if (migrated > 0)
+					getLogger().info("Moved the achievements of " + migrated + " profiles to their own table.");
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				getLogger().log(Level.SEVERE, "Could not move achievements to their own table! They will be moved on the next start.", t);
+			}
+		});
+	}
+	
+	/**
+	 * Open a connection pool for a MySQL or SQLite profile database and create
+	 * its table
+	 * 
+	 * @param dialect Which database to open
+	 * 
+	 * @return The profile database, or null if it could not be reached
+	 */
+	private ProfileDatabase openProfileDatabase(Dialect dialect) {
+		final MinigameSettings s = manager.config;
+		String table = String.valueOf(s.mysqlTables().get("profiles"));
+		ConnectionPool pool;
+		if (dialect == Dialect.MYSQL) {
+			getLogger().info("Connecting to MySQL database...");
+			pool = new ConnectionPool(new ConnectionFactory() {
+				
+				@Override
+				public Connection create() throws SQLException {
+					return new MySQL(s.mysqlIP(), s.mysqlPort(), s.mysqlDatabase()).connect(s.mysqlUsername(), s.mysqlPassword());
+				}
+			}, s.mysqlPoolSize(), s.mysqlPoolValidationTimeout(), s.mysqlPoolWaitTimeout());
+		} else {
+			getLogger().info("Opening SQLite database...");
+			final SQLite sqlite = new SQLite(new File(getDataFolder(), s.sqliteFile()));
+			// SQLite only allows one writer at a time, so more connections would just wait on each other
+			pool = new ConnectionPool(new ConnectionFactory() {
+				
+				@Override
+				public Connection create() throws SQLException {
+					return sqlite.connect();
+				}
+			}, 1, 0, s.mysqlPoolWaitTimeout());
+		}
+		ProfileDatabase pdb = new ProfileDatabase(pool, table, dialect);
+		try {
+			pdb.createTable();
+			return pdb;
+		} catch (SQLException | NoDriverException e) {
+			e.printStackTrace();
+			pool.close();
+			return null;
+		}
+	}
+	
+	/**
+	 * Start copying every profile from one backend to another on a
+	 * background thread. The backends are "yaml", "mysql" and "sqlite".
+	 * Progress is reported to the sender and the log. A migration that was
+	 * cancelled or failed resumes from the last batch it copied.<br>
+	 * Profiles are copied as they are stored, so changes that have not been
+	 * saved yet are not included. Copying to a backend that profiles are
+	 * currently saved to is refused, since the copies could overwrite newer
+	 * data.
+	 * 
+	 * @param from The backend to copy profiles from
+	 * @param to The backend to copy profiles to
+	 * @param sender Who to report progress to
+	 * 
+	 * @return Whether the migration was started, or false if another one is
+	 *         still running
+	 * 
+	 * @throws IllegalArgumentException If either backend is unknown, or they
+	 *             are the same
+	 * @throws IllegalStateException If profiles are being saved to the backend
+	 *             to copy them to, which would overwrite newer data
+	 */
+	public synchronized boolean migrateProfiles(String from, String to, final CommandSender sender) {
+		final String source = from.toLowerCase(), target = to.toLowerCase();
+		Validate.isTrue(isBackend(source), "Unknown backend: " + from);
+		Validate.isTrue(isBackend(target), "Unknown backend: " + to);
+		Validate.isTrue(!source.equals(target), "Cannot migrate profiles to the same backend");
+		if (isActiveBackend(target))
+			throw new IllegalStateException("Profiles are currently saved to " + target + ", so migrating to it would overwrite newer data");
+		if (migrationThread != null)
+			return false;
+		final File checkpoint = new File(getDataFolder(), "migration-" + source + "-" + target + ".yml");
+		if (checkpoint.exists())
+			sendLater(sender, ChatColor.YELLOW + "Resuming the previous migration from " + ChatColor.GOLD + source + ChatColor.YELLOW + " to " + ChatColor.GOLD + target + ChatColor.YELLOW + "...");
+		migrationThread = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				// databases are opened here so that connecting never blocks the server
+				List<ProfileDatabase> opened = new ArrayList<>(2);
+				try {
+					AbstractProfileStore in = openBackend(source, opened), out = openBackend(target, opened);
+					if (in == null || out == null) {
+						sendLater(sender, ChatColor.RED + "Could not open the " + (in == null ? source : target) + " database!");
+						return;
+					}
+					new ProfileMigration(in, out, checkpoint, manager.config.profileMigrationBatchSize(), new ProfileMigration.Listener() {
+						
+						/**
+						 * When progress was last reported to the sender
+						 */
+						private long lastReport = System.currentTimeMillis();
+						
+						@Override
+						public void onProgress(long migrated, UUID last) {
+							long now = System.currentTimeMillis();
+							if (now - lastReport >= 5000) {
+								lastReport = now;
+								getLogger().info("Migrated " + migrated + " profiles from " + source + " to " + target + "...");
+								sendLater(sender, ChatColor.YELLOW + "Migrated " + ChatColor.GOLD + migrated + ChatColor.YELLOW + " profiles so far...");
+							}
+						}
+						
+						@Override
+						public void onSkip(UUID uuid) {
+							getLogger().warning("Could not load the profile of " + uuid + " from " + source + "! It was not migrated.");
+						}
+						
+						@Override
+						public void onFinish(long migrated, boolean cancelled) {
+							String result = cancelled ? "cancelled after" : "finished, copied";
+							getLogger().info("Profile migration from " + source + " to " + target + " " + result + " " + migrated + " profiles.");
+							sendLater(sender, ChatColor.YELLOW + "Profile migration " + result + " " + ChatColor.GOLD + migrated + ChatColor.YELLOW + " profiles.");
+						}
+						
+						@Override
+						public void onError(Throwable error, long migrated) {
+							error.printStackTrace();
+							getLogger().warning("Profile migration from " + source + " to " + target + " failed after " + migrated + " profiles! Run it again to resume.");
+							sendLater(sender, ChatColor.RED + "Profile migration failed after " + migrated + " profiles! See the console for details.");
+						}
+					}).run();
+				} finally {
+					for (ProfileDatabase pdb : opened)
+						pdb.getPool().close();
+					migrationThread = null;
+				}
+			}
+		}, "MinigameManager Profile Migration");
+		migrationThread.setDaemon(true);
+		migrationThread.start();
+		return true;
+	}
+	
+	/**
+	 * Stop the running profile migration after the batch it is copying
+	 * 
+	 * @return Whether a migration was running
+	 */
+	public boolean cancelMigration() {
+		Thread migration = migrationThread;
+		if (migration == null)
+			return false;
+		migration.interrupt();
+		return true;
+	}
+	
+	/**
+	 * Determine whether a name is a profile backend that can be migrated
+	 * 
+	 * @param name The lowercase name of the backend
+	 * 
+	 * @return Whether it is "yaml", "mysql" or "sqlite"
+	 */
+	private static boolean isBackend(String name) {
+		return name.equals("yaml") || name.equals("mysql") || name.equals("sqlite");
+	}
+	
+	/**
+	 * Determine whether profiles are currently saved to a backend
+	 * 
+	 * @param name The lowercase name of the backend
+	 * 
+	 * @return Whether the backend is in use
+	 */
+	private boolean isActiveBackend(String name) {
+		ProfileDatabase pdb = manager.profileDatabase;
+		if (name.equals("yaml"))
+			return pdb == null || manager.config.profileFileBackup();
+		return pdb != null && pdb.getDialect() == (name.equals("mysql") ? Dialect.MYSQL : Dialect.SQLITE);
+	}
+	
+	/**
+	 * Open a profile backend for a migration. Everything runs on the calling
+	 * thread. The profile database in use is shared if it is the one asked
+	 * for, otherwise a new one is opened and added to <i>opened</i>.
+	 * 
+	 * @param name The lowercase name of the backend
+	 * @param opened The databases opened for the migration, to close later
+	 * 
+	 * @return The backend, or null if its database could not be reached
+	 */
+	private AbstractProfileStore openBackend(String name, List<ProfileDatabase> opened) {
+		if (name.equals("yaml"))
+			return new YamlProfileStore(manager.profileConf, MoreExecutors.sameThreadExecutor());
+		Dialect dialect = name.equals("mysql") ? Dialect.MYSQL : Dialect.SQLITE;
+		ProfileDatabase pdb = manager.profileDatabase;
+		if (pdb == null || pdb.getDialect() != dialect) {
+			pdb = openProfileDatabase(dialect);
+			if (pdb == null)
+				return null;
+			opened.add(pdb);
+			try {
+				pdb.migrateAchievements();
+			} catch (SQLException e) {
+				getLogger().log(Level.SEVERE, "Could not move the achievements in the " + name + " database to their own table!", e);
+				return null;
+			}
+		}
+		return new SqlProfileStore(pdb, MoreExecutors.sameThreadExecutor());
+	}
+	
+	/**
+	 * Send a message from any thread. It is sent on the main thread.
+	 * 
+	 * @param sender Who to send the message to
+	 * @param message The message
+	 */
+	private void sendLater(final CommandSender sender, final String message) {
+		if (!isEnabled())
+			return;
+		Bukkit.getScheduler().runTask(this, new Runnable() {
+			public void run() {
+				sender.sendMessage(message);
+			}
+		});
+	}
+	
+	/**
+	 * Replace the server's plugin manager with a
+	 * {@link MinigamePluginManagerWrapper}, or restore the original plugin
+	 * manager if it has already been replaced
+	 * 
+	 * @param inject Whether to inject the wrapper or restore the original
+	 * @return Whether a previous MinigamePluginManagerWrapper was found
+	 */
+	boolean injectPluginManager(boolean inject) {
+		// not as malicious as this sounds - custom plugin manager is just used to handle events more easily
+		if (inject)
+			getLogger().info("Injecting custom plugin manager...");
+		// get server instance and class
+		Server server = Bukkit.getServer();
+		Class<?> clazz = server.getClass();
+		try {
+			// attempt to get the pluginManager field and edit it
+			Field pluginManager = clazz.getDeclaredField("pluginManager");
+			pluginManager.setAccessible(true);
+			// the current plugin manager will be used to do the actual processing
+			PluginManager pm = (PluginManager) pluginManager.get(server);
+			// there shouldn't already be a MinigamePluginManagerWrapper instance
+			if (!pm.getClass().getName().equals(MinigamePluginManagerWrapper.class.getName())) {
+				// inject the wrapper so that the plugin can send all events to minigames
+				if (inject)
+					pluginManager.set(server, new MinigamePluginManagerWrapper(pm));
+				return false;
+			} else {
+				getLogger().info("Previous MinigamePluginManagerWrapper found, finding root...");
+				while (pm.getClass().getName().equals(MinigamePluginManagerWrapper.class.getName())) {
+					Field f = pm.getClass().getDeclaredField("pm");
+					f.setAccessible(true);
+					pm = (PluginManager) f.get(pm);
+				}
+				getLogger().info("Found root of type " + pm.getClass().getSimpleName());
+				pluginManager.set(server, inject ? new MinigamePluginManagerWrapper(pm) : pm);
+				return true;
+			}
+		} catch (NoSuchFieldException | SecurityException | IllegalAccessException e) {
+			e.printStackTrace();
+			if (inject)
+				getLogger().severe("Failed to inject plugin manager! EVENTS WILL NOT WORK PROPERLY!");
+			else
+				getLogger().warning("Failed to remove previous plugin manager! Events may be sent to minigames twice.");
+			return false;
+		}
+	}
+	
 	/**
 	 * Helpful method to determine whether the server is starting up or the
 	 * plugins are simply being reloaded<br>
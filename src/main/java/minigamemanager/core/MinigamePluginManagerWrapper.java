@@ -1,21 +1,13 @@
 package minigamemanager.core;
 
 import java.io.File;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Set;
 
 import org.bukkit.Server;
 import org.bukkit.command.SimpleCommandMap;
-import org.bukkit.entity.Entity;
-import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.event.entity.PlayerDeathEvent;
-import org.bukkit.event.entity.ProjectileHitEvent;
-import org.bukkit.event.entity.ProjectileLaunchEvent;
-import org.bukkit.event.player.PlayerEvent;
 import org.bukkit.permissions.Permissible;
 import org.bukkit.permissions.Permission;
 import org.bukkit.plugin.EventExecutor;
@@ -26,9 +18,6 @@ import org.bukkit.plugin.PluginLoader;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.SimplePluginManager;
 import org.bukkit.plugin.UnknownDependencyException;
-import org.bukkit.projectiles.ProjectileSource;
-
-import minigamemanager.core.MinigameManager.ListenerEntry;
 
 /**
  * Custom implementation of PluginManager that redirects everything to a
@@ -56,56 +45,7 @@ public final class MinigamePluginManagerWrapper implements PluginManager {
 	
 	@Override
 	public void callEvent(Event event) throws IllegalStateException {
-		ListenerEntry[] entries = MinigameManager.getMinigameManager().listeners.toArray(new ListenerEntry[MinigameManager.getMinigameManager().listeners.size()]);
-		for (ListenerEntry e : entries) {
-			try {
-				if (e.event.isInstance(event)) {
-					// make sure players are actually in the minigame
-					// manual checks to optimize
-					if (event instanceof PlayerEvent && !e.minigame.isPlaying(((PlayerEvent) event).getPlayer()))
-						continue;
-					// PlayerDeathEvent is not a PlayerEvent
-					if (event instanceof PlayerDeathEvent && !e.minigame.isPlaying(((PlayerDeathEvent) event).getEntity()))
-						continue;
-					// check shooters of projectiles
-					if(event instanceof ProjectileHitEvent) {
-						ProjectileSource entity = ((ProjectileHitEvent) event).getEntity().getShooter();
-						if(entity instanceof Player && !e.minigame.isPlaying((Player) entity))
-							continue;
-					}
-					if(event instanceof ProjectileLaunchEvent) {
-						ProjectileSource entity = ((ProjectileLaunchEvent) event).getEntity().getShooter();
-						if(entity instanceof Player && !e.minigame.isPlaying((Player) entity))
-							continue;
-					}
-					// cover any other events that have players involved
-					try {
-						// does it have a getPlayer() method?
-						Method getPlayer = event.getClass().getMethod("getPlayer");
-						getPlayer.setAccessible(true);
-						// if the player is not in the minigame, skip it
-						if (!e.minigame.isPlaying((Player) getPlayer.invoke(event)))
-							continue;
-					} catch (Exception ex) {}
-					try {
-						// does it have a getEntity() method?
-						Method getPlayer = event.getClass().getMethod("getEntity");
-						getPlayer.setAccessible(true);
-						// is the entity a player?
-						Entity entity = (Entity) getPlayer.invoke(event);
-						// if the player is not in the minigame, skip it
-						if (entity instanceof Player && !e.minigame.isPlaying((Player) entity))
-							continue;
-					} catch (Exception ex) {}
-					// event is compatible with minigame; send to listener
-					Method onEvent = e.listener.getClass().getDeclaredMethod("onEvent", e.event);
-					onEvent.setAccessible(true);
-					onEvent.invoke(e.listener, e.event.cast(event));
-				}
-			} catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException | ClassCastException ex) {
-				ex.printStackTrace();
-			}
-		}
+		MinigameManager.getMinigameManager().callListeners(event);
 		pm.callEvent(event);
 	}
 	
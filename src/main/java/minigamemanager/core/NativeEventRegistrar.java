@@ -0,0 +1,192 @@
+package minigamemanager.core;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+
+/**
+ * Registers minigame listeners with Bukkit's own event system, so that only
+ * events that a minigame is listening to ever reach MinigameManager. One
+ * executor is registered for each {@link HandlerList} and priority the first
+ * time a minigame listens to an event using them, and it is unregistered again
+ * once the last of those listeners is removed. Minigame listeners therefore
+ * run alongside other plugins' listeners of the same priority.
+ * 
+ * @author DonkeyCore
+ */
+final class NativeEventRegistrar {
+	
+	/**
+	 * The MinigameManager whose listeners are being registered
+	 */
+	private final MinigameManager manager;
+	/**
+	 * The active registrations, keyed by the event class that owns the handler
+	 * list
+	 */
+	private final Map<Class<? extends Event>, Registration> registrations = new HashMap<>();
+	/**
+	 * Sends events from Bukkit to the minigame listeners, for each priority
+	 */
+	private final EventExecutor[] executors = new EventExecutor[EventPriority.values().length];
+	
+	NativeEventRegistrar(MinigameManager manager) {
+		this.manager = manager;
+		for (final EventPriority priority : EventPriority.values()) {
+			executors[priority.ordinal()] = new EventExecutor() {
+				
+				@Override
+				public void execute(Listener listener, Event event) throws EventException {
+					NativeEventRegistrar.this.manager.callListeners(event, priority);
+				}
+			};
+		}
+	}
+	
+	/**
+	 * Make sure that events of a class are sent to minigame listeners
+	 * 
+	 * @param event The event class being listened to
+	 * @param priority The priority of the listener
+	 * @return Whether the event could be registered. False if the event does
+	 *         not declare its own handler list, in which case Bukkit cannot
+	 *         call it directly.
+	 * @see #canRegister(Class)
+	 */
+	synchronized boolean register(Class<? extends Event> event, EventPriority priority) {
+		if (!canRegister(event))
+			return false;
+		Class<? extends Event> owner = event;
+		Registration r = registrations.get(owner);
+		if (r == null) {
+			r = new Registration(owner);
+			registrations.put(owner, r);
+		}
+		int i = priority.ordinal();
+		if (r.counts[i]++ == 0)
+			Bukkit.getPluginManager().registerEvent(owner, r.listeners[i], priority, executors[i], MinigameManager.getPlugin());
+		return true;
+	}
+	
+	/**
+	 * Release a registration made with {@link #register(Class)}, unregistering
+	 * the executor from Bukkit if nothing else is listening
+	 * 
+	 * @param event The event class that is no longer being listened to
+	 * @param priority The priority of the listener
+	 */
+	synchronized void unregister(Class<? extends Event> event, EventPriority priority) {
+		Class<? extends Event> owner = event;
+		Registration r = canRegister(event) ? registrations.get(owner) : null;
+		int i = priority.ordinal();
+		if (r == null || r.counts[i] == 0 || --r.counts[i] > 0)
+			return;
+		HandlerList handlers = getHandlerList(owner);
+		if (handlers != null)
+			handlers.unregister(r.listeners[i]);
+	}
+	
+	/**
+	 * Unregister every executor from Bukkit
+	 */
+	synchronized void unregisterAll() {
+		for (Registration r : registrations.values()) {
+			HandlerList handlers = getHandlerList(r.event);
+			if (handlers == null)
+				continue;
+			for (Listener listener : r.listeners)
+				handlers.unregister(listener);
+		}
+		registrations.clear();
+	}
+	
+	/**
+	 * Determine whether listeners of an event class can be registered
+	 * natively. Events like InventoryInteractEvent use the handler list of a
+	 * superclass, which their own subclasses (InventoryClickEvent and
+	 * InventoryDragEvent) do not call, so only classes declaring their own
+	 * handler list receive every event they listen to.
+	 * 
+	 * @param event The event class
+	 * @return Whether the event class declares its own handler list
+	 */
+	static boolean canRegister(Class<? extends Event> event) {
+		return getRegistrationClass(event) == event;
+	}
+	
+	/**
+	 * Find the class that declares the handler list used for an event, the
+	 * same way Bukkit does when registering listeners
+	 * 
+	 * @param event The event class
+	 * @return The class declaring getHandlerList(), or null if there is none
+	 */
+	static Class<? extends Event> getRegistrationClass(Class<? extends Event> event) {
+		Class<?> clazz = event;
+		while (clazz != null && Event.class.isAssignableFrom(clazz) && clazz != Event.class) {
+			try {
+				clazz.getDeclaredMethod("getHandlerList");
+				return clazz.asSubclass(Event.class);
+			} catch (NoSuchMethodException e) {
+				clazz = clazz.getSuperclass();
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the handler list declared by an event class
+	 * 
+	 * @param event The class declaring getHandlerList()
+	 * @return The handler list, or null if it could not be retrieved
+	 */
+	private static HandlerList getHandlerList(Class<? extends Event> event) {
+		try {
+			Method method = event.getDeclaredMethod("getHandlerList");
+			method.setAccessible(true);
+			return (HandlerList) method.invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * The executor registrations for a single handler list
+	 * 
+	 * @author DonkeyCore
+	 */
+	private static final class Registration {
+		
+		/**
+		 * The class declaring the handler list
+		 */
+		private final Class<? extends Event> event;
+		/**
+		 * The listener objects the executors are registered under for each
+		 * priority, used to unregister them again
+		 */
+		private final Listener[] listeners = new Listener[EventPriority.values().length];
+		/**
+		 * How many minigame listeners rely on the registration of each priority
+		 */
+		private final int[] counts = new int[EventPriority.values().length];
+		
+		private Registration(Class<? extends Event> event) {
+			this.event = event;
+			for (int i = 0; i < listeners.length; i++)
+				listeners[i] = new Listener() {};
+		}
+		
+	}
+	
+}
@@ -0,0 +1,164 @@
+package minigamemanager.core;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
+import org.bukkit.event.Event;
+import org.bukkit.event.entity.EntityEvent;
+import org.bukkit.event.entity.ProjectileHitEvent;
+import org.bukkit.event.entity.ProjectileLaunchEvent;
+import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.projectiles.ProjectileSource;
+
+/**
+ * Finds the player involved in an event. How to do so is decided once for each
+ * event class and reused for every later event of that class.
+ * 
+ * @author DonkeyCore
+ */
+abstract class PlayerExtractor {
+	
+	/**
+	 * The extractor chosen for each event class
+	 */
+	private static final Map<Class<? extends Event>, PlayerExtractor> extractors = new ConcurrentHashMap<>();
+	
+	/**
+	 * Used for events that do not involve a player
+	 */
+	static final PlayerExtractor NONE = new PlayerExtractor() {
+		
+		@Override
+		Player extract(Event event) {
+			return null;
+		}
+	};
+	
+	/**
+	 * Used for subclasses of {@link PlayerEvent}
+	 */
+	private static final PlayerExtractor PLAYER = new PlayerExtractor() {
+		
+		@Override
+		Player extract(Event event) {
+			return ((PlayerEvent) event).getPlayer();
+		}
+	};
+	
+	/**
+	 * Used for subclasses of {@link EntityEvent}, such as PlayerDeathEvent,
+	 * where the entity may be a player
+	 */
+	private static final PlayerExtractor ENTITY = new PlayerExtractor() {
+		
+		@Override
+		Player extract(Event event) {
+			Entity entity = ((EntityEvent) event).getEntity();
+			return entity instanceof Player ? (Player) entity : null;
+		}
+	};
+	
+	/**
+	 * Used for projectile events, where the player is whoever shot the
+	 * projectile
+	 */
+	private static final PlayerExtractor SHOOTER = new PlayerExtractor() {
+		
+		@Override
+		Player extract(Event event) {
+			Entity entity = ((EntityEvent) event).getEntity();
+			if (!(entity instanceof Projectile))
+				return null;
+			ProjectileSource shooter = ((Projectile) entity).getShooter();
+			return shooter instanceof Player ? (Player) shooter : null;
+		}
+	};
+	
+	/**
+	 * Get the player involved in an event
+	 * 
+	 * @param event The event, which must be of the class this extractor was
+	 *            chosen for
+	 * @return The player involved, or null if there is none
+	 */
+	abstract Player extract(Event event);
+	
+	/**
+	 * Get the extractor for an event class
+	 * 
+	 * @param event The concrete class of the event
+	 * @return The extractor to use for every event of that class
+	 */
+	static PlayerExtractor forEvent(Class<? extends Event> event) {
+		PlayerExtractor extractor = extractors.get(event);
+		if (extractor == null) {
+			extractor = create(event);
+			extractors.put(event, extractor);
+		}
+		return extractor;
+	}
+	
+	private static PlayerExtractor create(Class<? extends Event> event) {
+		if (PlayerEvent.class.isAssignableFrom(event))
+			return PLAYER;
+		if (ProjectileHitEvent.class.isAssignableFrom(event) || ProjectileLaunchEvent.class.isAssignableFrom(event))
+			return SHOOTER;
+		if (EntityEvent.class.isAssignableFrom(event))
+			return ENTITY;
+		// cover any other events that have players involved
+		Method method = findMethod(event, "getPlayer");
+		if (method == null)
+			method = findMethod(event, "getEntity");
+		return method == null ? NONE : new MethodExtractor(method);
+	}
+	
+	/**
+	 * Find a public, no-argument method on an event that could return a player
+	 * 
+	 * @param event The class of the event
+	 * @param name The name of the method
+	 * @return The method, or null if the event does not have a suitable one
+	 */
+	private static Method findMethod(Class<? extends Event> event, String name) {
+		try {
+			Method method = event.getMethod(name);
+			Class<?> type = method.getReturnType();
+			if (Modifier.isStatic(method.getModifiers()) || !(type.isAssignableFrom(Player.class) || Player.class.isAssignableFrom(type)))
+				return null;
+			method.setAccessible(true);
+			return method;
+		} catch (NoSuchMethodException | SecurityException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Calls a getter that was found on the event class, for events that are
+	 * neither player nor entity events
+	 */
+	private static final class MethodExtractor extends PlayerExtractor {
+		
+		private final Method method;
+		
+		private MethodExtractor(Method method) {
+			this.method = method;
+		}
+		
+		@Override
+		Player extract(Event event) {
+			try {
+				Object player = method.invoke(event);
+				return player instanceof Player ? (Player) player : null;
+			} catch (ReflectiveOperationException e) {
+				return null;
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,108 @@
+package minigamemanager.events;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+
+import minigamemanager.api.minigame.Minigame.EventListener;
+import minigamemanager.core.MinigameManager;
+
+/**
+ * Sends MinigameManager's own events, such as RotationJoinEvent, directly to
+ * the subscribers inside MinigameManager. Events are only passed on to Bukkit
+ * when another plugin or a minigame is actually listening for them, so most
+ * events never go through Bukkit's event system.<br>
+ * Subscribers only receive events of exactly the class they subscribed to.
+ * 
+ * @author DonkeyCore
+ */
+public final class EventBus {
+	
+	/**
+	 * Subscribers for each event class. The arrays are never modified, they
+	 * are replaced whenever a subscriber is added or removed.
+	 */
+	private final Map<Class<? extends Event>, EventListener<?>[]> subscribers = new ConcurrentHashMap<>();
+	/**
+	 * The MinigameManager whose minigames may listen to the events
+	 */
+	private final MinigameManager manager;
+	
+	public EventBus(MinigameManager manager) {
+		this.manager = manager;
+	}
+	
+	/**
+	 * Subscribe to an event
+	 * 
+	 * @param <E> The event type
+	 * @param event The class of the event
+	 * @param subscriber What to do when the event happens
+	 */
+	public synchronized <E extends Event> void subscribe(Class<E> event, EventListener<? super E> subscriber) {
+		Validate.notNull(event, "Event must not be null");
+		Validate.notNull(subscriber, "Subscriber must not be null");
+		EventListener<?>[] old = subscribers.get(event);
+		EventListener<?>[] s = old == null ? new EventListener<?>[1] : Arrays.copyOf(old, old.length + 1);
+		s[s.length - 1] = subscriber;
+		subscribers.put(event, s);
+	}
+	
+	/**
+	 * Unsubscribe from an event
+	 * 
+	 * @param event The class of the event
+	 * @param subscriber The subscriber to remove
+	 * @return Whether the subscriber was subscribed
+	 */
+	public synchronized boolean unsubscribe(Class<? extends Event> event, EventListener<?> subscriber) {
+		EventListener<?>[] old = subscribers.get(event);
+		if (old == null)
+			return false;
+		for (int i = 0; i < old.length; i++) {
+			if (old[i] == subscriber) {
+				EventListener<?>[] s = new EventListener<?>[old.length - 1];
+				System.arraycopy(old, 0, s, 0, i);
+				System.arraycopy(old, i + 1, s, i, s.length - i);
+				if (s.length == 0)
+					subscribers.remove(event);
+				else
+					subscribers.put(event, s);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Send an event to its subscribers, then to Bukkit if anything else is
+	 * listening for it
+	 * 
+	 * @param <E> The event type
+	 * @param event The event to send
+	 * @return The event
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends Event> E post(E event) {
+		EventListener<?>[] s = subscribers.get(event.getClass());
+		if (s != null) {
+			for (EventListener<?> subscriber : s) {
+				try {
+					((EventListener<E>) subscriber).onEvent(event);
+				} catch (Throwable ex) {
+					MinigameManager.getPlugin().getLogger().log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + subscriber.getClass().getName(), ex);
+				}
+			}
+		}
+		// only bother Bukkit if other plugins or minigames are listening
+		if (event.getHandlers().getRegisteredListeners().length > 0 || manager.hasListeners(event.getClass()))
+			Bukkit.getPluginManager().callEvent(event);
+		return event;
+	}
+	
+}
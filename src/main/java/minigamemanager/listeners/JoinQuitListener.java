@@ -2,7 +2,10 @@ package minigamemanager.listeners;
 
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent.Result;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
@@ -22,8 +25,17 @@ public class JoinQuitListener implements Listener {
 		this.manager = manager;
 	}
 	
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+		// load the profile in the background so joining never waits for the database
+		if (event.getLoginResult() == Result.ALLOWED)
+			PlayerProfile.prefetchProfile(event.getUniqueId());
+	}
+	
 	@EventHandler
 	public void onJoin(PlayerJoinEvent event) {
+		// finish loading the profile now, rather than when it is first used
+		PlayerProfile.getPlayerProfile(event.getPlayer().getUniqueId());
 		if (manager.getMinigameSettings().entireServer())
 			manager.getRotationManager().join(event.getPlayer());
 	}
@@ -1,6 +1,5 @@
 package minigamemanager.listeners;
 
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
@@ -108,12 +107,16 @@ public class MinigameListener implements Listener {
 			BlockState state = block.getState();
 			if (block != null && state instanceof Sign) {
 				Sign sign = (Sign) state;
-				Bukkit.getPluginManager().callEvent(new SignClickEvent(event.getPlayer(), action, sign));
+				manager.getEventBus().post(new SignClickEvent(event.getPlayer(), action, sign));
 			}
 		}
 	}
 	
-	@EventHandler
+	/**
+	 * Subscribed to on MinigameManager's event bus
+	 * 
+	 * @param event The sign click
+	 */
 	public void onSignClick(SignClickEvent event) {
 		String[] lines = event.getLines();
 		Player player = event.getPlayer();
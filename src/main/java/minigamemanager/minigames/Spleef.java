@@ -8,6 +8,7 @@ import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
@@ -72,7 +73,7 @@ public class Spleef extends Minigame {
 	
 	@Override
 	public void onStart() {
-		// listen to when the player moves
+		// listen to when the player moves, unless the move was cancelled
 		listenEvent(new EventListener<PlayerMoveEvent>() {
 			
 			@Override
@@ -88,7 +89,7 @@ public class Spleef extends Minigame {
 						kill(event.getPlayer());
 				}
 			}
-		});
+		}, EventPriority.NORMAL, true);
 		// give everybody a very efficient diamond shovel
 		giveAll(new ItemStackSupplier() {
 			
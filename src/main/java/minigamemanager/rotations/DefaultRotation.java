@@ -1,7 +1,10 @@
 package minigamemanager.rotations;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.commons.lang.Validate;
@@ -44,6 +47,11 @@ public final class DefaultRotation implements Rotation {
 	 * playing
 	 */
 	private final List<UUID> inGame = new ArrayList<>();
+	/**
+	 * The profiles of those in-game, loaded together when the minigame begins
+	 * so that finishing it does not have to load any
+	 */
+	private Map<UUID, PlayerProfile> profiles = Collections.emptyMap();
 	/**
 	 * The parent rotation manager
 	 */
@@ -81,6 +89,19 @@ public final class DefaultRotation implements Rotation {
 		this.id = id;
 	}
 	
+	/**
+	 * Tell the rotation manager which minigame players are now playing, if it
+	 * keeps track of that
+	 * 
+	 * @param players The UUIDs of the players
+	 * @param minigame The minigame they are now playing, or null if they
+	 *            stopped playing
+	 */
+	private void setPlaying(Collection<UUID> players, Minigame minigame) {
+		if (rm instanceof DefaultRotationManager)
+			((DefaultRotationManager) rm).setPlaying(players, minigame);
+	}
+	
 	/**
 	 * Have a player join the rotation
 	 * 
@@ -126,8 +147,10 @@ public final class DefaultRotation implements Rotation {
 		// only let them leave if they're already in there
 		if (players.contains(uuid)) {
 			players.remove(uuid);
-			if (inGame.contains(uuid))
+			if (inGame.contains(uuid)) {
 				inGame.remove(uuid);
+				setPlaying(Collections.singleton(uuid), null);
+			}
 			// clear the scoreboard, teleport to spawn, and send a message
 			Player p = Bukkit.getPlayer(uuid);
 			if (p != null) {
@@ -191,6 +214,8 @@ public final class DefaultRotation implements Rotation {
 		// set state, add all players to ingame list, set default gamemode, and start the fun!
 		setState(RotationState.INGAME);
 		inGame.addAll(players);
+		profiles = PlayerProfile.getProfiles(inGame);
+		setPlaying(inGame, minigame);
 		for (UUID u : getInGame()) {
 			Player player = Bukkit.getPlayer(u);
 			clean(player);
@@ -208,7 +233,7 @@ public final class DefaultRotation implements Rotation {
 		if (error == MinigameErrors.SUCCESS) {
 			MinigameMessages messages = MinigameManager.getMinigameManager().getMessages();
 			for (UUID uuid : inGame)
-				PlayerProfile.getPlayerProfile(uuid).playedGame();
+				getProfile(uuid).playedGame();
 			if (winners != null) {
 				minigame.titleAll(messages.getMessage(MessageType.ANNOUNCE_WINNER).replace("%winner%", winners.getFirstPlaceName()), null, 5, 20, 5);
 				if (MinigameManager.getMinigameManager().getMinigameSettings().eloEnabled()) {
@@ -218,17 +243,17 @@ public final class DefaultRotation implements Rotation {
 					if (first != null) {
 						UUID[] notFirst = subtract(inGame, first);
 						for (UUID f : first) {
-							PlayerProfile fp = PlayerProfile.getPlayerProfile(f);
+							PlayerProfile fp = getProfile(f);
 							for (UUID u : notFirst)
-								fp.winELO(PlayerProfile.getPlayerProfile(u).getData().getELO());
+								fp.winELO(getProfile(u).getData().getELO());
 						}
 					}
 					if (second != null) {
 						UUID[] notSecond = subtract(inGame, second);
 						for (UUID s : second) {
-							PlayerProfile sp = PlayerProfile.getPlayerProfile(s);
+							PlayerProfile sp = getProfile(s);
 							for (UUID u : notSecond) {
-								long uelo = PlayerProfile.getPlayerProfile(u).getData().getELO();
+								long uelo = getProfile(u).getData().getELO();
 								if (contains(first, u))
 									sp.loseELO(uelo);
 								else
@@ -239,9 +264,9 @@ public final class DefaultRotation implements Rotation {
 					if (third != null) {
 						UUID[] notThird = subtract(inGame, third);
 						for (UUID t : third) {
-							PlayerProfile tp = PlayerProfile.getPlayerProfile(t);
+							PlayerProfile tp = getProfile(t);
 							for (UUID u : notThird) {
-								long uelo = PlayerProfile.getPlayerProfile(u).getData().getELO();
+								long uelo = getProfile(u).getData().getELO();
 								if (contains(first, u) || contains(second, u))
 									tp.loseELO(uelo);
 								else
@@ -250,17 +275,17 @@ public final class DefaultRotation implements Rotation {
 						}
 					}
 					for (UUID uuid : inGame) {
-						PlayerProfile p = PlayerProfile.getPlayerProfile(uuid);
+						PlayerProfile p = getProfile(uuid);
 						if ((first == null || !contains(first, uuid)) && (second == null || !contains(second, uuid)) && (third == null || !contains(third, uuid))) {
 							for (UUID u : inGame)
-								p.loseELO(PlayerProfile.getPlayerProfile(u).getData().getELO());
+								p.loseELO(getProfile(u).getData().getELO());
 						}
 						((Player) p.getPlayer()).sendMessage(messages.getMessage(MessageType.UPDATED_ELO).replace("%elo%", p.getData().getELO() + ""));
 					}
 				}
 			}
 			for (Bonus bonus : minigame.getBonuses()) {
-				PlayerProfile.getPlayerProfile(bonus.getUUID()).deposit(bonus.getCurrency());
+				getProfile(bonus.getUUID()).deposit(bonus.getCurrency());
 				MinigameSettings settings = MinigameManager.getMinigameManager().getMinigameSettings();
 				String currency = bonus.getCurrency() + "";
 				if (settings.useCurrencyPrefix())
@@ -269,12 +294,30 @@ public final class DefaultRotation implements Rotation {
 					currency = currency + settings.getCurrencySuffix();
 				Bukkit.getPlayer(bonus.getUUID()).sendMessage(messages.getMessage(MessageType.AWARDED_BONUS).replace("%currency%", currency).replace("%reason%", bonus.getReason()));
 			}
+			// save everybody's new stats together
+			List<PlayerProfile> toSave = new ArrayList<>();
+			for (UUID uuid : inGame)
+				toSave.add(getProfile(uuid));
+			PlayerProfile.saveProfiles(toSave);
 		}
 		// stop everything with an optional error, then restart the countdown
 		stop(error);
 		resume();
 	}
 	
+	/**
+	 * Get the profile of a player, using the profiles loaded when the minigame
+	 * began if possible
+	 * 
+	 * @param uuid The player's UUID
+	 * 
+	 * @return The player's profile
+	 */
+	private PlayerProfile getProfile(UUID uuid) {
+		PlayerProfile p = profiles.get(uuid);
+		return p != null ? p : PlayerProfile.getPlayerProfile(uuid);
+	}
+	
 	private static UUID[] subtract(List<UUID> root, UUID[] subtract) {
 		List<UUID> rootClone = new ArrayList<UUID>(root);
 		for (UUID u : subtract) {
@@ -312,8 +355,10 @@ public final class DefaultRotation implements Rotation {
 			minigame = null;
 		}
 		// clear/reset everything, and teleport everybody to the lobby
-		for (UUID u : inGame)
+		setPlaying(inGame, null);
+		for (UUID u : inGame) {
 			clean(Bukkit.getPlayer(u));
+		}
 		// show all players
 		for (UUID u : players) {
 			Player p = Bukkit.getPlayer(u);
@@ -323,6 +368,7 @@ public final class DefaultRotation implements Rotation {
 			}
 		}
 		inGame.clear();
+		profiles = Collections.emptyMap();
 		teleportAll(manager.getDefaultMinigameLocations().getRotationLocation("lobby"));
 		setLobbyScoreboard();
 	}
@@ -2,6 +2,8 @@ package minigamemanager.rotations;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -46,6 +48,12 @@ public final class DefaultRotationManager implements RotationManager {
 	 * The list of players playing, and their respective rotation
 	 */
 	private final Map<UUID, DefaultRotation> players = new HashMap<>();
+	/**
+	 * The minigame that each in-game player is currently playing, used to
+	 * route events to the right minigame. This map is never modified, it is
+	 * replaced whenever a match changes so it can be read from any thread.
+	 */
+	private volatile Map<UUID, Minigame> playing = Collections.emptyMap();
 	/**
 	 * Whether rotations should continue to run
 	 */
@@ -116,7 +124,7 @@ public final class DefaultRotationManager implements RotationManager {
 			return false;
 		r.join(player.getUniqueId());
 		players.put(player.getUniqueId(), r);
-		Bukkit.getPluginManager().callEvent(new RotationJoinEvent(r, player));
+		manager.getEventBus().post(new RotationJoinEvent(r, player));
 		if (r.getState() == RotationState.LOBBY && r.getPlayers().size() >= manager.getMinigameSettings().getMinimumPlayers())
 			start(r);
 		return true;
@@ -130,7 +138,7 @@ public final class DefaultRotationManager implements RotationManager {
 			if (r.hasPlayer(uuid)) {
 				r.leave(uuid, kicked);
 				players.remove(uuid);
-				Bukkit.getPluginManager().callEvent(new RotationLeaveEvent(r, player));
+				manager.getEventBus().post(new RotationLeaveEvent(r, player));
 				return true;
 			}
 		}
@@ -159,6 +167,37 @@ public final class DefaultRotationManager implements RotationManager {
 		return players.get(player);
 	}
 	
+	/**
+	 * Get the minigame that a player is currently playing. Safe to call from
+	 * any thread.
+	 * 
+	 * @param player The UUID of the player
+	 * @return The minigame the player is in-game for, or null if the player is
+	 *         not currently playing
+	 */
+	public Minigame getPlayingMinigame(UUID player) {
+		return playing.get(player);
+	}
+	
+	/**
+	 * Update the minigame that players are playing. Called by rotations
+	 * whenever their in-game players change.
+	 * 
+	 * @param players The UUIDs of the players
+	 * @param minigame The minigame the players are now playing, or null if the
+	 *            players are no longer in-game
+	 */
+	synchronized void setPlaying(Collection<UUID> players, Minigame minigame) {
+		Map<UUID, Minigame> m = new HashMap<>(playing);
+		for (UUID player : players) {
+			if (minigame == null)
+				m.remove(player);
+			else
+				m.put(player, minigame);
+		}
+		playing = Collections.unmodifiableMap(m);
+	}
+	
 	@Override
 	public void start(Rotation rotation) {
 		Validate.notNull(rotation, "The rotation cannot be null!");
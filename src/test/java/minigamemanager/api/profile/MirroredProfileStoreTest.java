@@ -0,0 +1,61 @@
+package minigamemanager.api.profile;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class MirroredProfileStoreTest {
+	
+	/**
+	 * A store that keeps profiles in a map, or fails every load
+	 */
+	private static class MapStore extends AbstractProfileStore {
+		
+		private final Map<UUID, ProfileData> data = new HashMap<>();
+		private final boolean broken;
+		
+		MapStore(boolean broken) {
+			super(MoreExecutors.sameThreadExecutor());
+			this.broken = broken;
+		}
+		
+		@Override
+		protected ProfileData loadProfile(UUID uuid) throws SQLException {
+			if (broken)
+				throw new SQLException("Connection lost");
+			return data.get(uuid);
+		}
+		
+		@Override
+		protected void saveProfile(UUID uuid, ProfileData data) {
+			this.data.put(uuid, data);
+		}
+		
+	}
+	
+	@Test
+	public void testFallBackToMirror() throws Exception {
+		MapStore mirror = new MapStore(false);
+		MirroredProfileStore store = new MirroredProfileStore(new MapStore(true), mirror, MoreExecutors.sameThreadExecutor());
+		UUID uuid = UUID.randomUUID();
+		ProfileData data = new ProfileData();
+		data.setELO(1500);
+		mirror.saveProfile(uuid, data);
+		assertEquals(1500, store.loadProfile(uuid).getELO());
+	}
+	
+	@Test(expected = SQLException.class)
+	public void testFailWhenMirrorDoesNotHaveProfile() throws Exception {
+		// the player may still be in the primary store, so they must not start from scratch
+		MirroredProfileStore store = new MirroredProfileStore(new MapStore(true), new MapStore(false), MoreExecutors.sameThreadExecutor());
+		store.loadProfile(UUID.randomUUID());
+	}
+	
+}
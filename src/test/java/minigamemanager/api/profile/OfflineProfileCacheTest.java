@@ -0,0 +1,89 @@
+package minigamemanager.api.profile;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import minigamemanager.api.profile.OfflineProfileCache.CachedProfile;
+
+public class OfflineProfileCacheTest {
+	
+	private File file;
+	
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("offline-profiles", ".dat");
+		file.delete();
+	}
+	
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+	
+	private static ProfileData data(long elo, long gamesPlayed, double currency) {
+		ProfileData data = new ProfileData();
+		data.setELO(elo);
+		data.setGamesPlayed(gamesPlayed);
+		data.setCurrency(currency);
+		return data;
+	}
+	
+	@Test
+	public void testPutAndGet() throws IOException {
+		UUID uuid = UUID.randomUUID();
+		try (OfflineProfileCache cache = new OfflineProfileCache(file, 64)) {
+			assertFalse(cache.contains(uuid));
+			assertEquals(1000, cache.getELO(uuid, 1000));
+			assertTrue(cache.put(uuid, data(1200, 5, 2.5)));
+			assertTrue(cache.put(uuid, data(1250, 6, 3.5)));
+			assertEquals(1, cache.size());
+			CachedProfile p = cache.get(uuid);
+			assertEquals(uuid, p.getUUID());
+			assertEquals(1250, p.getELO());
+			assertEquals(6, p.getGamesPlayed());
+			assertEquals(3.5, p.getCurrency(), 0);
+		}
+		// still there after reopening
+		try (OfflineProfileCache cache = new OfflineProfileCache(file, 64)) {
+			assertEquals(1, cache.size());
+			assertEquals(1250, cache.getELO(uuid, 1000));
+		}
+	}
+	
+	@Test
+	public void testFull() throws IOException {
+		try (OfflineProfileCache cache = new OfflineProfileCache(file, 16)) {
+			int added = 0;
+			for (int i = 0; i < 16; i++) {
+				if (cache.put(UUID.randomUUID(), data(i, 0, 0)))
+					added++;
+			}
+			assertEquals(11, added);
+			assertEquals(11, cache.size());
+			// lookups of missing players still end
+			assertNull(cache.get(UUID.randomUUID()));
+		}
+	}
+	
+	@Test
+	public void testTopELO() throws IOException {
+		try (OfflineProfileCache cache = new OfflineProfileCache(file, 256)) {
+			for (int i = 0; i < 100; i++)
+				cache.put(UUID.randomUUID(), data(i, 0, 0));
+			List<CachedProfile> top = cache.getTopELO(3);
+			assertEquals(3, top.size());
+			assertEquals(99, top.get(0).getELO());
+			assertEquals(98, top.get(1).getELO());
+			assertEquals(97, top.get(2).getELO());
+		}
+	}
+	
+}
@@ -0,0 +1,73 @@
+package minigamemanager.api.profile;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ProfileDataTest {
+	
+	@Test
+	public void testIncrementFromSeveralThreads() throws InterruptedException {
+		final ProfileData data = new ProfileData();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						data.incrementGamesPlayed();
+						data.addCurrency(0.5);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		assertEquals(40000, data.getGamesPlayed());
+		assertEquals(20000, data.getCurrency(), 0);
+	}
+	
+	@Test
+	public void testCompareAndSet() {
+		ProfileData data = new ProfileData();
+		data.setELO(1000);
+		assertFalse(data.compareAndSetELO(999, 1010));
+		assertTrue(data.compareAndSetELO(1000, 1010));
+		assertEquals(1010, data.getELO());
+		data.setCurrency(2.5);
+		assertFalse(data.compareAndSetCurrency(2, 1));
+		assertTrue(data.compareAndSetCurrency(2.5, 1));
+		assertEquals(1, data.getCurrency(), 0);
+	}
+	
+	@Test
+	public void testSnapshot() {
+		ProfileData data = new ProfileData();
+		data.setELO(1200);
+		data.setCurrency(3.5);
+		data.incrementGamesPlayed();
+		data.setAchievements(new int[] { 5, 7 });
+		ProfileData snapshot = data.snapshot();
+		assertFalse(snapshot.isDirty());
+		data.setELO(1300);
+		assertEquals(1200, snapshot.getELO());
+		assertEquals(3.5, snapshot.getCurrency(), 0);
+		assertEquals(1, snapshot.getGamesPlayed());
+		assertArrayEquals(new int[] { 5, 7 }, snapshot.getAchievements());
+	}
+	
+	@Test
+	public void testTakeChanges() {
+		ProfileData data = new ProfileData();
+		data.setELO(1200);
+		ProfileData changes = data.takeChanges();
+		assertEquals(ProfileData.ELO, changes.getDirtyFields());
+		assertFalse(data.isDirty());
+		assertNull(data.takeChanges());
+		data.restoreChanges(changes);
+		assertEquals(ProfileData.ELO, data.getDirtyFields());
+	}
+	
+}
@@ -0,0 +1,253 @@
+package minigamemanager.api.profile;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import minigamemanager.api.db.ConnectionPool;
+import minigamemanager.api.db.ConnectionPool.ConnectionFactory;
+import minigamemanager.api.db.PooledConnection;
+
+public class ProfileDatabaseTest {
+	
+	private ConnectionPool pool;
+	private ProfileDatabase pdb;
+	
+	@Before
+	public void setUp() throws SQLException {
+		// an in-memory database in MySQL mode stands in for the real server
+		final String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+		pool = new ConnectionPool(new ConnectionFactory() {
+			
+			@Override
+			public Connection create() throws SQLException {
+				return DriverManager.getConnection(url);
+			}
+		}, 2, 1, 100);
+		pdb = new ProfileDatabase(pool, "profiles");
+		pdb.createTable();
+	}
+	
+	@After
+	public void tearDown() {
+		pool.close();
+	}
+	
+	@Test
+	public void testMissingProfile() throws SQLException {
+		assertNull(pdb.getProfileData(UUID.randomUUID()));
+	}
+	
+	@Test
+	public void testSaveAndLoad() throws SQLException {
+		UUID uuid = UUID.randomUUID();
+		try (PooledConnection c = pool.getConnection()) {
+			PreparedStatement ps = c.prepare("INSERT INTO profiles (uuid, elo, currency, gamesPlayed) VALUES (?, 1000, 0, 0);");
+			ps.setString(1, uuid.toString());
+			ps.executeUpdate();
+		}
+		// rows without achievements load as having none
+		PlayerProfile profile = pdb.getProfile(uuid);
+		assertNotNull(profile);
+		assertEquals(1000, profile.getData().getELO());
+		assertEquals(0, profile.getData().getAchievements().length);
+		profile.getData().setELO(1012);
+		profile.getData().setGamesPlayed(1);
+		profile.getData().setAchievements(new int[] { 5, 7 });
+		pdb.saveProfile(profile);
+		ProfileData data = pdb.getProfileData(uuid);
+		assertEquals(1012, data.getELO());
+		assertEquals(1, data.getGamesPlayed());
+		assertArrayEquals(new int[] { 5, 7 }, data.getAchievements());
+		// achievements that were taken away are removed
+		profile.getData().setAchievements(new int[] { 7 });
+		pdb.saveProfile(profile);
+		assertArrayEquals(new int[] { 7 }, pdb.getProfileData(uuid).getAchievements());
+	}
+	
+	@Test
+	public void testLoadSeveral() throws SQLException {
+		List<UUID> uuids = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			UUID uuid = UUID.randomUUID();
+			try (PooledConnection c = pool.getConnection()) {
+				PreparedStatement ps = c.prepare("INSERT INTO profiles (uuid, elo, currency, gamesPlayed) VALUES (?, ?, 0, 0);");
+				ps.setString(1, uuid.toString());
+				ps.setLong(2, 1000 + i);
+				ps.executeUpdate();
+			}
+			uuids.add(uuid);
+		}
+		pdb.unlockAchievement(uuids.get(1), 5, 1000);
+		pdb.unlockAchievement(uuids.get(1), 7, 1000);
+		// players that are not in the database are left out
+		uuids.add(UUID.randomUUID());
+		Map<UUID, ProfileData> loaded = pdb.getProfileData(uuids);
+		assertEquals(3, loaded.size());
+		for (int i = 0; i < 3; i++)
+			assertEquals(1000 + i, loaded.get(uuids.get(i)).getELO());
+		assertEquals(0, loaded.get(uuids.get(0)).getAchievements().length);
+		assertArrayEquals(new int[] { 5, 7 }, loaded.get(uuids.get(1)).getAchievements());
+		assertFalse(loaded.containsKey(uuids.get(3)));
+	}
+	
+	@Test
+	public void testScanProfiles() throws SQLException {
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			UUID uuid = UUID.randomUUID();
+			try (PooledConnection c = pool.getConnection()) {
+				PreparedStatement ps = c.prepare("INSERT INTO profiles (uuid, elo, currency, gamesPlayed) VALUES (?, 1000, 0, 0);");
+				ps.setString(1, uuid.toString());
+				ps.executeUpdate();
+			}
+			ids.add(uuid.toString());
+		}
+		Collections.sort(ids);
+		List<UUID> first = pdb.scanProfiles(null, 3);
+		assertEquals(3, first.size());
+		List<UUID> rest = pdb.scanProfiles(first.get(2), 3);
+		assertEquals(2, rest.size());
+		List<String> scanned = new ArrayList<>();
+		for (UUID uuid : first)
+			scanned.add(uuid.toString());
+		for (UUID uuid : rest)
+			scanned.add(uuid.toString());
+		assertEquals(ids, scanned);
+		assertTrue(pdb.scanProfiles(rest.get(1), 3).isEmpty());
+	}
+	
+	@Test
+	public void testUnlockAndCount() throws SQLException {
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+		assertTrue(pdb.unlockAchievement(a, 5, 1000));
+		assertTrue(pdb.unlockAchievement(b, 5, 2000));
+		assertTrue(pdb.unlockAchievement(b, 7, 2000));
+		assertEquals(2, pdb.countPlayersWithAchievement(5));
+		assertEquals(1, pdb.countPlayersWithAchievement(7));
+		assertEquals(0, pdb.countPlayersWithAchievement(9));
+	}
+	
+	@Test
+	public void testMigrateAchievements() throws SQLException {
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+		try (PooledConnection c = pool.getConnection()) {
+			PreparedStatement ps = c.prepare("INSERT INTO profiles (uuid, elo, currency, gamesPlayed, achievements) VALUES (?, 1000, 0, 0, ?);");
+			ps.setString(1, a.toString());
+			ps.setString(2, "5,7");
+			ps.executeUpdate();
+			ps.setString(1, b.toString());
+			ps.setString(2, "null");
+			ps.executeUpdate();
+		}
+		assertEquals(2, pdb.migrateAchievements());
+		assertArrayEquals(new int[] { 5, 7 }, pdb.getProfileData(a).getAchievements());
+		assertEquals(0, pdb.getProfileData(b).getAchievements().length);
+		assertEquals(1, pdb.countPlayersWithAchievement(7));
+		// everything was already moved
+		assertEquals(0, pdb.migrateAchievements());
+	}
+	
+	@Test
+	public void testSaveClearsOldAchievements() throws SQLException {
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID();
+		try (PooledConnection c = pool.getConnection()) {
+			PreparedStatement ps = c.prepare("INSERT INTO profiles (uuid, elo, currency, gamesPlayed, achievements) VALUES (?, 1000, 0, 0, '5,7');");
+			ps.setString(1, a.toString());
+			ps.executeUpdate();
+			ps.setString(1, b.toString());
+			ps.executeUpdate();
+		}
+		// achievements only in the old column are kept when something else changes
+		ProfileData data = pdb.getProfileData(a);
+		data.clearDirty();
+		data.setGamesPlayed(1);
+		pdb.saveProfile(a, data);
+		assertArrayEquals(new int[] { 5, 7 }, pdb.getProfileData(a).getAchievements());
+		assertEquals(1, pdb.countPlayersWithAchievement(7));
+		// and revoked ones do not come back from the old column
+		data = pdb.getProfileData(b);
+		data.clearDirty();
+		data.setAchievements(new int[] { 5 });
+		pdb.saveProfile(b, data);
+		assertArrayEquals(new int[] { 5 }, pdb.getProfileData(b).getAchievements());
+		try (PooledConnection c = pool.getConnection()) {
+			PreparedStatement ps = c.prepare("SELECT COUNT(*) FROM profiles WHERE achievements IS NOT NULL;");
+			try (ResultSet rs = ps.executeQuery()) {
+				rs.next();
+				assertEquals(0, rs.getInt(1));
+			}
+		}
+	}
+	
+	@Test
+	public void testSaveProfiles() throws SQLException {
+		List<PlayerProfile> profiles = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			UUID uuid = UUID.randomUUID();
+			try (PooledConnection c = pool.getConnection()) {
+				PreparedStatement ps = c.prepare("INSERT INTO profiles (uuid, elo, currency, gamesPlayed, achievements) VALUES (?, 1000, 0, 0, 'null');");
+				ps.setString(1, uuid.toString());
+				ps.executeUpdate();
+			}
+			PlayerProfile profile = pdb.getProfile(uuid);
+			profile.getData().setGamesPlayed(i + 1);
+			profiles.add(profile);
+		}
+		assertEquals(3, pdb.saveProfiles(profiles).length);
+		for (int i = 0; i < 3; i++)
+			assertEquals(i + 1, pdb.getProfileData(profiles.get(i).getUUID()).getGamesPlayed());
+	}
+	
+	@Test
+	public void testConnectionsAreReused() throws SQLException {
+		Connection first;
+		try (PooledConnection c = pool.getConnection()) {
+			first = c.getConnection();
+			assertSame(c.prepare("SELECT 1;"), c.prepare("SELECT 1;"));
+		}
+		try (PooledConnection c = pool.getConnection()) {
+			assertSame(first, c.getConnection());
+		}
+	}
+	
+	@Test
+	public void testPoolSize() throws SQLException {
+		try (PooledConnection a = pool.getConnection(); PooledConnection b = pool.getConnection()) {
+			assertNotSame(a.getConnection(), b.getConnection());
+			try {
+				pool.getConnection();
+				fail("Pool gave out more connections than its size");
+			} catch (SQLException e) {
+				// expected, every connection is in use
+			}
+		}
+	}
+	
+	@Test
+	public void testInvalidConnectionReplaced() throws SQLException {
+		Connection first;
+		try (PooledConnection c = pool.getConnection()) {
+			first = c.getConnection();
+		}
+		first.close();
+		try (PooledConnection c = pool.getConnection()) {
+			assertNotSame(first, c.getConnection());
+			assertFalse(c.getConnection().isClosed());
+		}
+	}
+	
+}
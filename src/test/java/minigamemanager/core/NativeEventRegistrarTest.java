@@ -0,0 +1,32 @@
+package minigamemanager.core;
+
+import static org.junit.Assert.*;
+
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryEvent;
+import org.bukkit.event.inventory.InventoryInteractEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.junit.Test;
+
+public class NativeEventRegistrarTest {
+	
+	@Test
+	public void testGetRegistrationClass() {
+		assertEquals(InventoryClickEvent.class, NativeEventRegistrar.getRegistrationClass(InventoryClickEvent.class));
+		assertEquals(PlayerMoveEvent.class, NativeEventRegistrar.getRegistrationClass(PlayerMoveEvent.class));
+		assertEquals(PlayerTeleportEvent.class, NativeEventRegistrar.getRegistrationClass(PlayerTeleportEvent.class));
+	}
+	
+	@Test
+	public void testGetRegistrationClassOfAbstractEvent() {
+		// InventoryInteractEvent is abstract and uses the handler list of InventoryEvent
+		assertEquals(InventoryEvent.class, NativeEventRegistrar.getRegistrationClass(InventoryInteractEvent.class));
+		assertFalse(NativeEventRegistrar.canRegister(InventoryInteractEvent.class));
+		// clicks and drags are called on their own handler lists
+		assertTrue(NativeEventRegistrar.canRegister(InventoryClickEvent.class));
+		assertTrue(NativeEventRegistrar.canRegister(InventoryDragEvent.class));
+	}
+	
+}